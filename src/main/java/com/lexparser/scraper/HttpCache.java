@@ -0,0 +1,348 @@
+package com.lexparser.scraper;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * On-disk cache of fetched pages, keyed by a hash of the url, in front of {@link HttpFetcher}.
+ * Every entry keeps the page body (deflated) together with its ETag / Last-Modified validators; a refetch
+ * is sent as a conditional GET, so an unchanged page costs a 304 and no transfer. In offline mode only
+ * cached pages are served and the network is never touched.
+ * Eviction is LRU by file modification time, which is bumped on every hit.
+ */
+public class HttpCache {
+
+    public static final String DIR_PROPERTY = "gw.httpCache.dir";
+    public static final String MAX_BYTES_PROPERTY = "gw.httpCache.maxBytes";
+    public static final String OFFLINE_PROPERTY = "gw.httpCache.offline";
+    private static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+    private static final int MAGIC = 0x47574843; // "GWHC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".page";
+
+    private static HttpCache defaultCache;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final HttpFetcher fetcher;
+    private volatile boolean offline;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public HttpCache(Path directory, long maxBytes, HttpFetcher fetcher) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * The cache configured through the {@value #DIR_PROPERTY} / {@value #MAX_BYTES_PROPERTY} / {@value #OFFLINE_PROPERTY}
+     * system properties, defaulting to ~/.cache/gw-swing-alternative/http, 128 MB and online, over the shared fetcher.
+     */
+    public static synchronized HttpCache getDefault() {
+        if (defaultCache == null) {
+            String dir = System.getProperty(DIR_PROPERTY);
+            Path path = dir != null ? Paths.get(dir)
+                    : Paths.get(System.getProperty("user.home"), ".cache", "gw-swing-alternative", "http");
+            long max = Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+            defaultCache = new HttpCache(path, max, HttpFetcher.shared());
+            defaultCache.setOffline(Boolean.getBoolean(OFFLINE_PROPERTY));
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Consumes a page body while it arrives, from the network or from the cache.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        /**
+         * @param body     the decoded body
+         * @param charset  charset named by the server, or null
+         * @param location the url after redirects, to resolve relative links against
+         */
+        T read(InputStream body, String charset, String location) throws IOException;
+    }
+
+    /**
+     * Fetches and parses a page, revalidating a cached copy instead of downloading it again.
+     *
+     * @throws HttpStatusException    on an error status, or a 304 for a page that isn't cached
+     * @throws FileNotFoundException in offline mode, when the page is not cached
+     */
+    public Document fetchDocument(String url) throws IOException {
+        return fetch(url, Jsoup::parse);
+    }
+
+    /**
+     * Like {@link #fetchDocument}, but hands the body to {@code reader} instead of building a Document.
+     * A fresh body is stored while the reader consumes it.
+     */
+    public <T> T fetch(String url, BodyReader<T> reader) throws IOException {
+        Path entry = entryFor(url);
+        Entry cached = readEntry(entry, url);
+        if (offline) {
+            if (cached == null) {
+                misses.incrementAndGet();
+                throw new FileNotFoundException("Offline, and " + url + " is not cached");
+            }
+            hits.incrementAndGet();
+            return read(entry, cached, reader);
+        }
+
+        Map<String, String> validators = new LinkedHashMap<>();
+        if (cached != null) {
+            if (!cached.etag().isEmpty()) validators.put("If-None-Match", cached.etag());
+            if (!cached.lastModified().isEmpty()) validators.put("If-Modified-Since", cached.lastModified());
+        }
+        try (HttpFetcher.Response response = fetcher.get(HttpFetcher.toURI(url), validators)) {
+            if (response.status() == 304) {
+                if (cached == null) {
+                    // nothing was asked conditionally, so there is no page behind this; not an empty one either
+                    throw new HttpStatusException("Not modified, but the page isn't cached", 304, url);
+                }
+                hits.incrementAndGet();
+                return read(entry, cached, reader);
+            }
+            if (response.status() >= 400) {
+                throw new HttpStatusException("HTTP error fetching URL", response.status(), url);
+            }
+            misses.incrementAndGet();
+            if (response.status() != 200) {
+                return reader.read(response.body(), response.charset(), response.uri().toString());
+            }
+            return readAndStore(entry, url, response, reader);
+        }
+    }
+
+    public boolean isOffline() { return offline; }
+    public void setOffline(boolean offline) { this.offline = offline; }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public Path getDirectory() { return directory; }
+    public long getMaxBytes() { return maxBytes; }
+
+    //<editor-fold desc="Keying">
+    private Path entryFor(String url) {
+        return directory.resolve(key(url) + SUFFIX);
+    }
+
+    static String key(String url) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Entries">
+    /*
+        int magic, int version
+        utf url, utf location (after redirects), utf etag, utf lastModified, utf charset ("" when absent)
+        deflated body bytes until the end of the file
+     */
+    private record Entry(String url, String location, String etag, String lastModified, String charset) {
+    }
+
+    // the header of a cached entry, or null on a miss or an unreadable / foreign entry
+    private static Entry readEntry(Path file, String url) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Entry e = readHeader(in);
+            return e.url().equals(url) ? e : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Entry readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a page cache entry");
+        }
+        return new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+    }
+
+    private <T> T read(Path file, Entry e, BodyReader<T> reader) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            readHeader(in);
+            T result = reader.read(new InflaterInputStream(in), e.charset().isEmpty() ? null : e.charset(), e.location());
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        }
+    }
+
+    // reads the body while it arrives and copies it into a new entry on the way; a failing disk only costs the entry
+    private <T> T readAndStore(Path entry, String url, HttpFetcher.Response response, BodyReader<T> reader) throws IOException {
+        Path tmp = null;
+        OutputStream file = null;
+        DeflaterOutputStream body;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, "tmp", SUFFIX + ".part");
+            file = new BufferedOutputStream(Files.newOutputStream(tmp));
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeUTF(url);
+            header.writeUTF(response.uri().toString());
+            header.writeUTF(response.header("ETag").orElse(""));
+            header.writeUTF(response.header("Last-Modified").orElse(""));
+            header.writeUTF(Objects.requireNonNullElse(response.charset(), ""));
+            header.flush();
+            body = new DeflaterOutputStream(file);
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (file != null) file.close();
+                if (tmp != null) Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+            return reader.read(response.body(), response.charset(), response.uri().toString()); // best effort
+        }
+
+        Tee tee = new Tee(response.body(), body);
+        try {
+            T result = reader.read(tee, response.charset(), response.uri().toString());
+            tee.close(); // unless the reader already did
+            if (tee.complete()) {
+                try {
+                    Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    evict();
+                } catch (IOException | RuntimeException e) {
+                    // best effort
+                }
+            }
+            return result;
+        } finally {
+            tee.abort();
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // copies whatever is read into the entry; on close it reads the rest, so the entry gets the whole body
+    // even when the reader stopped early
+    private static final class Tee extends FilterInputStream {
+        private final DeflaterOutputStream copy;
+        private boolean broken, closed, eof;
+
+        Tee(InputStream in, DeflaterOutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                eof = true;
+            } else if (!broken) {
+                try {
+                    copy.write(b, off, n);
+                } catch (IOException e) {
+                    broken = true; // keep serving the parser, just don't keep the entry
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return read(new byte[(int) Math.min(n, 8192)]);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                byte[] buf = new byte[8192];
+                while (!broken && read(buf, 0, buf.length) >= 0) {
+                }
+            } finally {
+                try {
+                    super.close();
+                } finally {
+                    try {
+                        copy.close(); // finishes the deflater and closes the file
+                    } catch (IOException e) {
+                        broken = true;
+                    }
+                }
+            }
+        }
+
+        // closes without reading the rest, the entry is given up
+        void abort() throws IOException {
+            if (!closed) {
+                broken = true;
+                close();
+            }
+        }
+
+        boolean complete() {
+            return closed && eof && !broken;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Eviction">
+    private synchronized void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> s = Files.list(directory)) {
+            entries = new ArrayList<>(s.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList());
+        }
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, Long> touched = new HashMap<>();
+        long total = 0;
+        for (Path p : entries) {
+            long size = Files.size(p);
+            sizes.put(p, size);
+            touched.put(p, Files.getLastModifiedTime(p).toMillis());
+            total += size;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(touched::get)); // least recently used first
+        for (Path p : entries) {
+            if (total <= maxBytes) break;
+            Files.deleteIfExists(p);
+            total -= sizes.get(p);
+        }
+    }
+    //</editor-fold>
+}
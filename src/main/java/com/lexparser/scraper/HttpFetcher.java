@@ -0,0 +1,290 @@
+package com.lexparser.scraper;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.net.IDN;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared HTTP layer for the scrapers.
+ * One {@link HttpClient} serves the whole application, so connections are kept alive and reused across pages
+ * (over HTTP/2 where the server offers it) instead of paying a TCP/TLS handshake per fetch.
+ * Responses are requested gzip/deflate compressed, decoded on the fly and streamed into jsoup without
+ * buffering the page first. Concurrent requests per host are capped ({@value #PER_HOST_PROPERTY}, default 4).
+ */
+public final class HttpFetcher {
+
+    public static final String PER_HOST_PROPERTY = "gw.http.perHost";
+    static final String USER_AGENT = "Mozilla/5.0 (Educational Research Bot 1.0)";
+
+    private static final int DEFAULT_PER_HOST = 4;
+    private static final Duration CONNECTION_TIMEOUT = Duration.ofSeconds(15);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    private static final long DRAIN_LIMIT = 64 * 1024; // past this, dropping the connection is cheaper
+
+    private static final HttpFetcher SHARED = new HttpFetcher(newClient(),
+            Math.max(1, Integer.getInteger(PER_HOST_PROPERTY, DEFAULT_PER_HOST)));
+
+    private final HttpClient client;
+    private final int perHost;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param client  client to send requests with
+     * @param perHost maximum number of requests in flight to one host
+     */
+    public HttpFetcher(HttpClient client, int perHost) {
+        this.client = client;
+        this.perHost = perHost;
+    }
+
+    /**
+     * The application-wide fetcher.
+     */
+    public static HttpFetcher shared() {
+        return SHARED;
+    }
+
+    /**
+     * A client configured the way the shared one is: HTTP/2 preferred, redirects followed.
+     */
+    public static HttpClient newClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECTION_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Fetches and parses a page. The body is parsed while it arrives.
+     *
+     * @param url the page to fetch
+     * @return the parsed document, its location set to the url after redirects
+     * @throws HttpStatusException on an error status, like {@code Jsoup.connect(url).get()}
+     */
+    public Document fetchDocument(String url) throws IOException {
+        try (Response response = get(toURI(url), Map.of())) {
+            if (response.status() >= 400) {
+                throw new HttpStatusException("HTTP error fetching URL", response.status(), url);
+            }
+            return response.parse();
+        }
+    }
+
+    /**
+     * Turns a url as it is typed or scraped into a URI, escaping what a URI can't hold (spaces, non-ASCII, ...)
+     * the way jsoup does for {@code Jsoup.connect(url)}: host to punycode, path decoded and re-encoded, anything
+     * illegal in query and fragment percent-encoded. Escapes already in the url are kept.
+     *
+     * @throws MalformedURLException if it isn't an absolute http(s)-like url even then
+     */
+    public static URI toURI(String url) throws MalformedURLException {
+        try {
+            URL u = new URL(url.trim());
+            URI base = new URI(u.getProtocol(), u.getUserInfo(), IDN.toASCII(decode(u.getHost())), u.getPort(),
+                    decode(u.getPath()), null, null);
+            StringBuilder normalized = new StringBuilder(base.toASCIIString());
+            if (u.getQuery() != null) normalized.append('?').append(escape(u.getQuery()));
+            if (u.getRef() != null) normalized.append('#').append(escape(u.getRef()));
+            return new URI(normalized.toString());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            MalformedURLException malformed = new MalformedURLException("Malformed URL: " + url);
+            malformed.initCause(e);
+            throw malformed;
+        }
+    }
+
+    // undoes escapes, so the URI constructor doesn't escape the '%' of one again; a lone '%' is kept as it is
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s.replace("+", "%2B"), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+
+    // percent-encodes, as UTF-8, what may not appear in a query or fragment; '%' is taken to start an escape
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if (c <= 0x20 || c >= 0x7F || "\"<>\\^`{|}".indexOf(c) >= 0) {
+                sb.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            } else {
+                sb.append((char) c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sends a GET and returns once the headers are in. The body is decoded according to its Content-Encoding.
+     * The caller must close the response; until then it counts against the host's limit.
+     *
+     * @param uri     the resource to fetch
+     * @param headers additional request headers
+     */
+    public Response get(URI uri, Map<String, String> headers) throws IOException {
+        Semaphore slot = hosts.computeIfAbsent(hostKey(uri), k -> new Semaphore(perHost));
+        try {
+            slot.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + uri.getHost());
+        }
+        InputStream raw = null;
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(READ_TIMEOUT)
+                    .header("User-Agent", USER_AGENT)
+                    .header("Accept-Encoding", "gzip, deflate");
+            headers.forEach(request::header);
+            HttpResponse<InputStream> response = client.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+            raw = response.body();
+            return new Response(response, new Body(decode(response, raw), raw), slot);
+        } catch (InterruptedException e) {
+            slot.release();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " + uri);
+        } catch (IOException | RuntimeException e) {
+            slot.release();
+            if (raw != null) raw.close();
+            throw e;
+        }
+    }
+
+    private static String hostKey(URI uri) {
+        return uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT) + ":" + uri.getPort();
+    }
+
+    private static InputStream decode(HttpResponse<?> response, InputStream raw) throws IOException {
+        int status = response.statusCode();
+        if (status == 204 || status == 304) {
+            return raw; // no body to decode
+        }
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "gzip", "x-gzip":
+                return new GZIPInputStream(raw, 8192);
+            case "deflate": {
+                // meant to be zlib-wrapped, but some servers send raw deflate; tell them apart by the zlib header
+                PushbackInputStream in = new PushbackInputStream(raw, 2);
+                byte[] head = in.readNBytes(2);
+                in.unread(head);
+                boolean zlib = head.length == 2 && (head[0] & 0x0F) == 8 && ((head[0] & 0xFF) << 8 | (head[1] & 0xFF)) % 31 == 0;
+                return new InflaterInputStream(in, new Inflater(!zlib), 8192);
+            }
+            default:
+                return raw;
+        }
+    }
+
+    // the connection only goes back to the pool once its body was read to the end, and jsoup closes the stream
+    // as soon as it has parsed </html> (gzip also leaves its trailer unread), so read what little is left first
+    private static final class Body extends FilterInputStream {
+        private final InputStream raw;
+        private boolean closed;
+
+        Body(InputStream decoded, InputStream raw) {
+            super(decoded);
+            this.raw = raw;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                byte[] buf = new byte[8192];
+                long left = DRAIN_LIMIT;
+                int n;
+                while (left > 0 && (n = raw.read(buf, 0, (int) Math.min(buf.length, left))) >= 0) {
+                    left -= n;
+                }
+            } catch (IOException e) {
+                // the connection is dropped instead of reused, nothing else to do
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * Status, headers and decoded body of a response. Closing it releases its slot for the host.
+     */
+    public static final class Response implements Closeable {
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+        private final Semaphore slot;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Response(HttpResponse<InputStream> response, InputStream body, Semaphore slot) {
+            this.response = response;
+            this.body = body;
+            this.slot = slot;
+        }
+
+        public int status() { return response.statusCode(); }
+        public URI uri() { return response.uri(); }
+        public Optional<String> header(String name) { return response.headers().firstValue(name); }
+        public InputStream body() { return body; }
+
+        /**
+         * Charset named in the Content-Type header, or null to let jsoup detect it.
+         */
+        public String charset() {
+            for (String param : header("Content-Type").orElse("").split(";")) {
+                param = param.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    return param.substring(8).replace("\"", "").trim();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Parses the body as html, streaming.
+         */
+        public Document parse() throws IOException {
+            return Jsoup.parse(body, charset(), uri().toString());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    body.close();
+                } finally {
+                    slot.release();
+                }
+            }
+        }
+    }
+}
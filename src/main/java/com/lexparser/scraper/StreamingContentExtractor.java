@@ -0,0 +1,314 @@
+package com.lexparser.scraper;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Extracts a Wikipedia page in one forward pass over the html stream, using jsoup's {@link StreamParser}.
+ * Collects what {@link WikipediaContentExtractor} selects out of a full Document (title, section headers,
+ * {@code .mw-parser-output > p} paragraphs and infobox rows) and the article text, with the same results, but looks
+ * at every element once, as soon as it is complete, and then removes it from the tree. Only the elements still open, and the insides of a paragraph, heading or infobox being collected,
+ * are ever held. Article paragraphs are handed to a listener while the rest of the page is still downloading.
+ */
+public final class StreamingContentExtractor {
+
+    private static final String CONTENT_ID = "mw-content-text";
+    private static final String PARSER_OUTPUT_CLASS = "mw-parser-output";
+    private static final String TITLE_CLASS = "mw-page-title-main";
+    private static final String INFOBOX_CLASS = "infobox";
+
+    private StreamingContentExtractor() {
+    }
+
+    /**
+     * Everything collected from one page.
+     */
+    public static final class Result {
+        private String mainTitle;
+        private String h1Title;
+        private final List<String> sections = new ArrayList<>();
+        private final List<String> paragraphs = new ArrayList<>();
+        private final List<String> infoboxData = new ArrayList<>();
+        private final List<String> articleParagraphs = new ArrayList<>();
+        private Element content; // the first #mw-content-text, once seen
+        private String pageTitle, language;
+        private boolean parserOutput, anyParagraph;
+        private int textLength;
+        private int spacesOwed; // go before the next visible character, unless nothing follows
+        private final Set<Element> entered = Collections.newSetFromMap(new IdentityHashMap<>()); // open, partly counted
+        private final String location;
+
+        private Result(String location) {
+            this.location = location;
+        }
+
+        /**
+         * Title, sections, paragraphs and infobox rows, as {@link WikipediaContentExtractor#extractContent} returns them.
+         */
+        public WikipediaContentExtractor.ExtractedContent toExtractedContent() {
+            String title = mainTitle != null ? mainTitle : h1Title != null ? h1Title : "Unknown Title";
+            return new WikipediaContentExtractor.ExtractedContent(title, sections, paragraphs, infoboxData);
+        }
+
+        /**
+         * The page's {@code <title>}, like {@code Document.title()}; empty if there is none.
+         */
+        public String getPageTitle() { return pageTitle != null ? pageTitle : ""; }
+
+        /**
+         * The {@code lang} of the html element, empty if there is none.
+         */
+        public String getLanguage() { return language != null ? language : ""; }
+
+        /**
+         * Whether the page has what {@link WikipediaContentFetcher#isValidWikipediaPage} looks for in a Document:
+         * #mw-content-text, a .mw-parser-output and at least one paragraph.
+         */
+        public boolean isArticle() { return content != null && parserOutput && anyParagraph; }
+
+        /**
+         * Length of all the text on the page, whitespace collapsed, like {@code document.text().length()}. Can be a
+         * few spaces off: where Element.text() puts a space after a block depends on what follows it, which a
+         * stream doesn't know yet.
+         */
+        public int getTextLength() { return textLength; }
+
+        /**
+         * The paragraph text of the article body: the {@code Element.text()} of every {@code p} anywhere inside the
+         * first #mw-content-text, in document order, the empty ones skipped, each followed by a blank line.
+         * The same as {@code select("p")} on that element would give.
+         *
+         * @throws IllegalArgumentException if the page has no #mw-content-text
+         */
+        public String articleText() {
+            if (content == null) {
+                throw new IllegalArgumentException("No article content (#" + CONTENT_ID + ") on " + location);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String p : articleParagraphs) {
+                sb.append(p).append("\n\n");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Extracts a page from its body bytes.
+     *
+     * @param charset     charset from the response, or null for UTF-8 (what Wikipedia serves)
+     * @param onParagraph gets every non-empty article paragraph, in order, as soon as it has been parsed
+     */
+    public static Result extract(InputStream body, String charset, String baseUri, Consumer<String> onParagraph) throws IOException {
+        Charset cs = StandardCharsets.UTF_8;
+        if (charset != null) {
+            try {
+                cs = Charset.forName(charset);
+            } catch (IllegalArgumentException e) {
+                // unknown name, stay with utf-8
+            }
+        }
+        return extract(new InputStreamReader(body, cs), baseUri, onParagraph);
+    }
+
+    /**
+     * Extracts a page from its html.
+     *
+     * @param onParagraph gets every non-empty article paragraph, in order, as soon as it has been parsed
+     */
+    public static Result extract(Reader html, String baseUri, Consumer<String> onParagraph) throws IOException {
+        Result r = new Result(baseUri);
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(html, baseUri)) {
+            Iterator<Element> it = parser.iterator();
+            while (it.hasNext()) {
+                visit(it.next(), r, onParagraph);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return r;
+    }
+
+    // jsoup hands over each element once it is closed. That only says how far the parse got, though: a few elements
+    // are closed without being handed over (e.g. some closed in table context), so every node before the closed one
+    // is taken as complete too. Complete nodes are collected in document order and then dropped from the tree,
+    // except inside an element that is still open and has to be collected as a whole (a paragraph, heading, infobox).
+    private static void visit(Element el, Result r, Consumer<String> onParagraph) {
+        if (el.parent() == null) { // the document itself, at the very end
+            for (Node n : new ArrayList<>(el.childNodes())) {
+                consume(n, r, onParagraph);
+            }
+            return;
+        }
+        Element unit = el; // the outermost open element waiting to be collected whole, or el itself
+        boolean open = false;
+        for (Element a = el.parent(); a != null; a = a.parent()) {
+            if (isCollected(a)) {
+                unit = a;
+                open = true;
+            }
+        }
+        List<Element> path = new ArrayList<>();
+        for (Element n = unit; n.parent() != null; n = n.parent()) {
+            path.add(n);
+        }
+        for (int i = path.size() - 1; i >= 0; i--) { // whatever precedes the path, outermost first
+            Element n = path.get(i);
+            Node first;
+            while ((first = n.parent().childNode(0)) != n) {
+                consume(first, r, onParagraph);
+            }
+            if (i > 0 && r.entered.add(n)) enter(n, r); // open, its first children are about to be consumed
+        }
+        if (!open) {
+            consume(el, r, onParagraph);
+        }
+    }
+
+    private static boolean isCollected(Element el) {
+        return switch (el.normalName()) {
+            case "p", "h1", "h2", "h3" -> true;
+            default -> el.hasClass(TITLE_CLASS) || el.hasClass(INFOBOX_CLASS);
+        };
+    }
+
+    private static void consume(Node node, Result r, Consumer<String> onParagraph) {
+        if (node instanceof Element el) {
+            for (Element e : el.getAllElements()) { // document order
+                collect(e, r, onParagraph);
+            }
+        }
+        count(node, r);
+        node.remove();
+    }
+
+    // every node is consumed exactly once, on its own or within an element, so this adds up to the whole page;
+    // spaces go where Element.text() puts them
+    private static void count(Node node, Result r) {
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node n, int depth) {
+                if (n instanceof TextNode t) {
+                    countText(t.getWholeText(), preservesWhitespace(t.parent()), r);
+                } else if (n instanceof Element el && !r.entered.remove(el)) {
+                    enter(el, r);
+                }
+            }
+
+            @Override
+            public void tail(Node n, int depth) {
+                if (n instanceof Element el && !el.tag().isInline()) space(r);
+            }
+        }, node);
+    }
+
+    private static void enter(Element el, Result r) {
+        if (el.isBlock() || el.nameIs("br")) space(r);
+    }
+
+    // one space between two pieces of text, if there isn't whitespace already
+    private static void space(Result r) {
+        if (r.textLength > 0 && r.spacesOwed == 0) r.spacesOwed = 1;
+    }
+
+    // whitespace and the invisible characters are all in the BMP, so this can go by char
+    private static void countText(String text, boolean preserve, Result r) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (StringUtil.isActuallyWhitespace(c)) {
+                if (!preserve) {
+                    space(r); // runs collapse into one
+                } else if (r.textLength > 0) {
+                    r.spacesOwed++; // leading and trailing whitespace is trimmed off
+                }
+            } else if (preserve || !StringUtil.isInvisibleChar(c)) {
+                r.textLength += r.spacesOwed + 1;
+                r.spacesOwed = 0;
+            }
+        }
+    }
+
+    // pre, textarea, title and the like, up to a few levels up, as jsoup decides it
+    private static boolean preservesWhitespace(Element el) {
+        for (int i = 0; el != null && i < 6; i++, el = el.parent()) {
+            if (el.tag().preserveWhitespace()) return true;
+        }
+        return false;
+    }
+
+    // an element nested in one of its own kind is collected together with the outer one, like a select would
+    private static void collect(Element el, Result r, Consumer<String> onParagraph) {
+        boolean anyP = false, inP = false, inH1 = false, inHeading = false, inTitle = false, inInfobox = false, inHead = false;
+        Element content = null;
+        for (Element a = el.parent(); a != null; a = a.parent()) {
+            switch (a.normalName()) {
+                case "p" -> anyP = true;
+                case "h1" -> inH1 = true;
+                case "h2", "h3" -> inHeading = true;
+                case "head" -> inHead = true;
+            }
+            if (a.hasClass(TITLE_CLASS)) inTitle = true;
+            if (a.hasClass(INFOBOX_CLASS)) inInfobox = true;
+            if (CONTENT_ID.equals(a.id())) {
+                content = a; // outermost one wins
+                inP = anyP; // paragraphs are selected within the content, a paragraph around it doesn't count
+            }
+        }
+        if (content == null && CONTENT_ID.equals(el.id())) content = el;
+        if (r.content == null && content != null) r.content = content; // getElementById: the first in the document
+        boolean inContent = content != null && content == r.content;
+
+        String tag = el.normalName();
+        if (tag.equals("html") && r.language == null) r.language = el.attr("lang");
+        if (tag.equals("title") && inHead && r.pageTitle == null) r.pageTitle = StringUtil.normaliseWhitespace(el.text()).trim();
+        if (tag.equals("p")) r.anyParagraph = true;
+        if (el.hasClass(PARSER_OUTPUT_CLASS)) r.parserOutput = true;
+        if (tag.equals("p") && !inP && inContent) {
+            for (Element p : el.select("p")) {
+                String text = p.text();
+                if (!text.isEmpty()) {
+                    r.articleParagraphs.add(text);
+                    onParagraph.accept(text);
+                }
+                String trimmed = text.trim();
+                Element parent = p.parent();
+                if (parent != null && parent.hasClass(PARSER_OUTPUT_CLASS) && trimmed.length() > 20) {
+                    r.paragraphs.add(trimmed);
+                }
+            }
+        } else if (tag.equals("h1") && !inH1 && r.h1Title == null) {
+            r.h1Title = el.text().trim();
+        } else if ((tag.equals("h2") || tag.equals("h3")) && !inHeading) {
+            for (Element header : el.select("h2 .mw-headline, h3 .mw-headline")) {
+                String text = header.text().trim();
+                if (!text.isEmpty() && !WikipediaContentExtractor.isUnwantedSection(text)) {
+                    r.sections.add(text);
+                }
+            }
+        }
+        if (el.hasClass(TITLE_CLASS) && !inTitle && r.mainTitle == null) {
+            r.mainTitle = el.text().trim();
+        }
+        if (el.hasClass(INFOBOX_CLASS) && !inInfobox) {
+            for (Element infobox : el.select("." + INFOBOX_CLASS)) {
+                WikipediaContentExtractor.addInfoboxRows(infobox, r.infoboxData);
+            }
+        }
+    }
+}
@@ -31,6 +31,20 @@ public class WikipediaContentExtractor {
         return new ExtractedContent(title, sections, paragraphs, infoboxData);
     }
 
+    /**
+     * Structured content of a page that was extracted while it was fetched, see
+     * {@link WikipediaContentFetcher#fetchPage}. Same result as for the page's Document, without building one.
+     *
+     * @param page the streamed page
+     * @return ExtractedContent containing organized page content
+     */
+    public ExtractedContent extractContent(StreamingContentExtractor.Result page) {
+        if (page == null) {
+            return new ExtractedContent("", new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        return page.toExtractedContent();
+    }
+
     /**
      * Extracts the main article title from the document.
      */
@@ -93,26 +107,33 @@ public class WikipediaContentExtractor {
         Elements infoboxes = document.select(".infobox");
         
         for (Element infobox : infoboxes) {
-            Elements rows = infobox.select("tr");
-            for (Element row : rows) {
-                Elements cells = row.select("th, td");
-                if (cells.size() >= 2) {
-                    String label = cells.get(0).text().trim();
-                    String value = cells.get(1).text().trim();
-                    if (!label.isEmpty() && !value.isEmpty()) {
-                        infoboxData.add(label + ": " + value);
-                    }
-                }
-            }
+            addInfoboxRows(infobox, infoboxData);
         }
         
         return infoboxData;
     }
 
+    /**
+     * Appends the "label: value" rows of one infobox.
+     */
+    static void addInfoboxRows(Element infobox, List<String> infoboxData) {
+        Elements rows = infobox.select("tr");
+        for (Element row : rows) {
+            Elements cells = row.select("th, td");
+            if (cells.size() >= 2) {
+                String label = cells.get(0).text().trim();
+                String value = cells.get(1).text().trim();
+                if (!label.isEmpty() && !value.isEmpty()) {
+                    infoboxData.add(label + ": " + value);
+                }
+            }
+        }
+    }
+
     /**
      * Checks if a section should be excluded from extraction.
      */
-    private boolean isUnwantedSection(String sectionName) {
+    static boolean isUnwantedSection(String sectionName) {
         String lowerSection = sectionName.toLowerCase();
         return lowerSection.contains("references") ||
                lowerSection.contains("external links") ||
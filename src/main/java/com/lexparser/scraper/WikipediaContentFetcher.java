@@ -1,6 +1,5 @@
 package com.lexparser.scraper;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import java.io.IOException;
 import java.net.URL;
@@ -11,17 +10,30 @@ import java.net.URL;
  */
 public class WikipediaContentFetcher {
     
-    private static final int CONNECTION_TIMEOUT = 15000; // 15 seconds
-    private static final int READ_TIMEOUT = 30000; // 30 seconds
-    private static final String USER_AGENT = "Mozilla/5.0 (Educational Research Bot 1.0)";
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY = 2000; // 2 seconds
 
+    private final HttpCache cache;
+
+    /**
+     * Fetches through the default page cache.
+     */
+    public WikipediaContentFetcher() {
+        this(HttpCache.getDefault());
+    }
+
+    /**
+     * @param cache the page cache to fetch through
+     */
+    public WikipediaContentFetcher(HttpCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Fetches the HTML document from a Wikipedia URL with retry logic.
      * 
      * @param url the Wikipedia URL to fetch
-     * @return FetchResult containing the document or error information
+     * @return FetchResult containing the extracted page or error information
      */
     public FetchResult fetchPage(URL url) {
         return fetchPage(url, 0);
@@ -32,16 +44,17 @@ public class WikipediaContentFetcher {
      */
     private FetchResult fetchPage(URL url, int attemptNumber) {
         try {
-            Document document = Jsoup.connect(url.toString())
-                    .userAgent(USER_AGENT)
-                    .timeout(CONNECTION_TIMEOUT)
-                    .followRedirects(true)
-                    .maxBodySize(0) // No limit on body size
-                    .get();
-            
-            return new FetchResult(true, document, null, "Successfully fetched page");
+            // Conditional GET through the page cache, over the shared pooled client; no limit on body size.
+            // Extracted in one pass while it arrives, no Document is built
+            StreamingContentExtractor.Result page = cache.fetch(url.toString(),
+                    (body, charset, location) -> StreamingContentExtractor.extract(body, charset, location, p -> { }));
+
+            return new FetchResult(true, page, null, "Successfully fetched page");
             
         } catch (IOException e) {
+            if (cache.isOffline()) {
+                return new FetchResult(false, null, e, e.getMessage()); // retrying cannot help
+            }
             if (attemptNumber < MAX_RETRIES - 1) {
                 try {
                     Thread.sleep(RETRY_DELAY * (attemptNumber + 1)); // Exponential backoff
@@ -57,6 +70,13 @@ public class WikipediaContentFetcher {
         }
     }
 
+    /**
+     * The page cache behind this fetcher, for offline mode and hit/miss statistics.
+     */
+    public HttpCache getCache() {
+        return cache;
+    }
+
     /**
      * Validates that the fetched document is a proper Wikipedia article page.
      * 
@@ -74,6 +94,16 @@ public class WikipediaContentFetcher {
                !document.select("p").isEmpty();
     }
 
+    /**
+     * Validates that the fetched page is a proper Wikipedia article page.
+     *
+     * @param page the page as extracted by {@link #fetchPage}
+     * @return true if the page appears to be a valid Wikipedia article
+     */
+    public boolean isValidWikipediaPage(StreamingContentExtractor.Result page) {
+        return page != null && page.isArticle();
+    }
+
     /**
      * Extracts basic metadata from the Wikipedia page.
      * 
@@ -92,6 +122,22 @@ public class WikipediaContentFetcher {
         return new PageMetadata(title, language, contentLength);
     }
 
+    /**
+     * Basic metadata of a page as extracted by {@link #fetchPage}.
+     *
+     * @param page the extracted page
+     * @return PageMetadata containing basic page information
+     */
+    public PageMetadata extractMetadata(StreamingContentExtractor.Result page) {
+        if (page == null) {
+            return new PageMetadata("Unknown", "Unknown", 0);
+        }
+
+        String title = page.getPageTitle().replace(" - Wikipedia", "");
+        String language = page.getLanguage().isEmpty() ? "unknown" : page.getLanguage();
+        return new PageMetadata(title, language, page.getTextLength());
+    }
+
     /**
      * Extracts the language code from the Wikipedia document.
      */
@@ -105,19 +151,19 @@ public class WikipediaContentFetcher {
      */
     public static class FetchResult {
         private final boolean success;
-        private final Document document;
+        private final StreamingContentExtractor.Result page;
         private final Exception error;
         private final String message;
 
-        public FetchResult(boolean success, Document document, Exception error, String message) {
+        public FetchResult(boolean success, StreamingContentExtractor.Result page, Exception error, String message) {
             this.success = success;
-            this.document = document;
+            this.page = page;
             this.error = error;
             this.message = message;
         }
 
         public boolean isSuccess() { return success; }
-        public Document getDocument() { return document; }
+        public StreamingContentExtractor.Result getPage() { return page; }
         public Exception getError() { return error; }
         public String getMessage() { return message; }
     }
@@ -0,0 +1,223 @@
+package com.lexparser.scraper;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads articles out of a local MediaWiki {@code pages-articles} XML dump, plain, {@code .gz} or {@code .bz2}.
+ * The dump is pulled through StAX one page at a time, so only the page being read is ever in memory, whatever
+ * the size of the dump. Only articles (namespace 0) are returned, redirects are skipped, and the text of a page
+ * is only collected when its title passes the filter. Nothing is fetched: DTDs and external entities are off.
+ * <p>
+ * The JDK has no bzip2 decoder, so {@code .bz2} dumps are decompressed by the {@code bzip2} command.
+ */
+public final class WikipediaDumpReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    /**
+     * One article of the dump.
+     *
+     * @param url  the article's url on the wiki the dump came from
+     * @param text the prose paragraphs, separated by blank lines
+     */
+    public record Article(String title, String url, String text) {
+    }
+
+    private final Path dump;
+    private final Process decompressor; // bzip2, if any
+    private final InputStream in;
+    private final XMLStreamReader xml;
+    private final Pattern titleFilter;
+    private final int limit;
+    private String articleBase; // from <siteinfo><base>, e.g. https://en.wikipedia.org/wiki/
+    private int returned;
+    private long pagesSeen;
+
+    /**
+     * @param dump        the dump file; .gz and .bz2 are decompressed on the fly
+     * @param titleFilter only articles whose title contains a match are returned, null for all
+     * @param limit       stop after this many articles, 0 for no limit
+     */
+    public WikipediaDumpReader(Path dump, Pattern titleFilter, int limit) throws IOException {
+        this.dump = dump;
+        this.titleFilter = titleFilter;
+        this.limit = limit;
+        String name = dump.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".bz2")) {
+            try {
+                decompressor = new ProcessBuilder("bzip2", "-dc", dump.toAbsolutePath().toString())
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+            } catch (IOException e) {
+                throw new IOException("Reading .bz2 dumps needs the bzip2 command; install it or decompress " + dump + " first", e);
+            }
+            in = new BufferedInputStream(decompressor.getInputStream(), BUFFER_SIZE);
+        } else {
+            decompressor = null;
+            InputStream file = new BufferedInputStream(Files.newInputStream(dump), BUFFER_SIZE);
+            in = name.endsWith(".gz") ? new GZIPInputStream(file, BUFFER_SIZE) : file;
+        }
+        try {
+            xml = FACTORY.createXMLStreamReader(in, StandardCharsets.UTF_8.name());
+        } catch (XMLStreamException e) {
+            close();
+            throw new IOException("Not an xml dump: " + dump, e);
+        }
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // the jdk parser counts every &amp; / &lt; towards a 50M limit meant for entity expansion attacks,
+        // which a full dump blows through; with DTDs off there is nothing to expand anyway
+        for (String limit : new String[]{"jdk.xml.totalEntitySizeLimit", "jdk.xml.maxGeneralEntitySizeLimit"}) {
+            try {
+                f.setProperty(limit, 0);
+            } catch (IllegalArgumentException e) {
+                // not the jdk parser, it has its own rules
+            }
+        }
+        return f;
+    }
+
+    /**
+     * The next article that passes the filter, or null at the end of the dump or once the limit is reached.
+     */
+    public Article next() throws IOException {
+        if (limit > 0 && returned >= limit) {
+            return null;
+        }
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) continue;
+                switch (xml.getLocalName()) {
+                    case "base" -> articleBase = baseOf(xml.getElementText().trim());
+                    case "page" -> {
+                        Article a = readPage();
+                        if (a != null) {
+                            returned++;
+                            return a;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed dump " + dump + ": " + e.getMessage(), e);
+        }
+        finish();
+        return null;
+    }
+
+    /**
+     * Pages read so far, including the ones that were skipped.
+     */
+    public long getPagesSeen() { return pagesSeen; }
+
+    // reads up to </page>; null if the page is not wanted
+    private Article readPage() throws XMLStreamException {
+        pagesSeen++;
+        String title = null;
+        boolean wanted = true;
+        String text = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            switch (xml.getLocalName()) {
+                case "title" -> {
+                    title = xml.getElementText();
+                    wanted = titleFilter == null || titleFilter.matcher(title).find();
+                }
+                case "ns" -> wanted &= xml.getElementText().trim().equals("0");
+                case "redirect" -> {
+                    wanted = false;
+                    depth++;
+                }
+                case "text" -> {
+                    if (wanted) {
+                        text = xml.getElementText(); // the last revision wins
+                    } else {
+                        skipElement();
+                    }
+                }
+                default -> depth++;
+            }
+        }
+        if (!wanted || title == null || text == null) {
+            return null;
+        }
+        String plain = WikitextStripper.plainText(text);
+        return plain.isEmpty() ? null : new Article(title, urlOf(title), plain);
+    }
+
+    // skips the current element's content without collecting it
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    // https://en.wikipedia.org/wiki/Main_Page -> https://en.wikipedia.org/wiki/
+    private static String baseOf(String mainPage) {
+        int slash = mainPage.lastIndexOf('/');
+        return slash < 0 ? null : mainPage.substring(0, slash + 1);
+    }
+
+    private String urlOf(String title) {
+        String name = title.replace(' ', '_');
+        if (articleBase == null) {
+            return dump.toAbsolutePath() + "#" + name;
+        }
+        return articleBase + URLEncoder.encode(name, StandardCharsets.UTF_8)
+                .replace("%2F", "/").replace("%3A", ":").replace("%28", "(").replace("%29", ")").replace("%2C", ",");
+    }
+
+    // at the natural end, a failing bzip2 means the dump was cut short
+    private void finish() throws IOException {
+        if (decompressor == null) return;
+        try {
+            if (decompressor.waitFor(10, TimeUnit.SECONDS) && decompressor.exitValue() != 0) {
+                throw new IOException("bzip2 failed on " + dump + " (exit " + decompressor.exitValue() + "), the dump may be truncated");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for bzip2");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (xml != null) xml.close();
+        } catch (XMLStreamException e) {
+            // closing the stream below is what matters
+        } finally {
+            if (decompressor != null) decompressor.destroy(); // it may still be writing into a full pipe
+            in.close();
+        }
+    }
+}
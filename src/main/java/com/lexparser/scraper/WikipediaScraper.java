@@ -1,9 +1,7 @@
 package com.lexparser.scraper;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import java.io.IOException;
+import java.util.function.Consumer;
 
 // Now serves entry to webcrawling functionality
 public class WikipediaScraper {
@@ -17,34 +15,30 @@ public class WikipediaScraper {
     // don't have to create a dedicated instance for every url. This just serves as a
     public static String scrapeContent(String url) {
         try {
-            // Connect to the URL and get the HTML document
-            Document doc = Jsoup.connect(url).get();
-            
-            // Get the main content div (this is specific to Wikipedia's structure)
-            Element content = doc.getElementById("mw-content-text");
-            
-            // Get all paragraphs from the content
-            Elements paragraphs = content.select("p");
-            
-            // StringBuilder to store the cleaned text
-            StringBuilder cleanedText = new StringBuilder();
-            
-            // Process each paragraph
-            for (Element paragraph : paragraphs) {
-                // Get the text and clean it
-                String text = paragraph.text();
-                if (!text.isEmpty()) {
-                    cleanedText.append(text).append("\n\n");
-                }
-            }
-            
-            return cleanedText.toString();
-            
+            return fetchText(url);
         } catch (Exception e) {
             return "Error scraping the page: " + e.getMessage();
         }
     }
 
+    /**
+     * Fetch and clean in one streaming pass: the paragraph text of the article, see
+     * {@link StreamingContentExtractor.Result#articleText()}. The page is extracted while it downloads and never
+     * held as a whole Document.
+     */
+    public static String fetchText(String url) throws IOException {
+        return fetchText(url, paragraph -> {
+        });
+    }
+
+    /**
+     * Like {@link #fetchText(String)}; {@code onParagraph} gets each paragraph as soon as it has arrived.
+     */
+    public static String fetchText(String url, Consumer<String> onParagraph) throws IOException {
+        return HttpCache.getDefault().fetch(url, (body, charset, location) ->
+                StreamingContentExtractor.extract(body, charset, location, onParagraph).articleText());
+    }
+
     // Main method for testing
     public static void main(String[] args) {
         // Example usage
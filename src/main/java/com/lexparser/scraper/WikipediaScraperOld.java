@@ -48,29 +48,29 @@ public class WikipediaScraperOld {
         }
 
         // Step 3: Validate fetched page
-        if (!contentFetcher.isValidWikipediaPage(fetchResult.getDocument())) {
+        if (!contentFetcher.isValidWikipediaPage(fetchResult.getPage())) {
             return new ScrapingResult(false, "Page does not appear to be a valid Wikipedia article", null);
         }
 
         // Step 4: Extract structured content
         WikipediaContentExtractor.ExtractedContent extractedContent = 
-            contentExtractor.extractContent(fetchResult.getDocument());
+            contentExtractor.extractContent(fetchResult.getPage());
 
         // Step 5: Clean text content
         List<String> cleanedParagraphs = textCleaner.cleanTextSegments(extractedContent.getParagraphs());
-        WikipediaTextCleaner.CleanedText cleanedCombinedText = 
-            textCleaner.cleanText(extractedContent.getCombinedText());
+        // the combined text is the paragraphs joined, so join them cleaned rather than clean everything twice
+        String cleanedCombinedText = String.join(" ", cleanedParagraphs);
 
         // Step 6: Extract metadata
         WikipediaContentFetcher.PageMetadata metadata = 
-            contentFetcher.extractMetadata(fetchResult.getDocument());
+            contentFetcher.extractMetadata(fetchResult.getPage());
 
         // Step 7: Compile results
         ProcessedContent processedContent = new ProcessedContent(
             extractedContent.getTitle(),
             extractedContent.getSections(),
             cleanedParagraphs,
-            cleanedCombinedText.getCleanedText(),
+            cleanedCombinedText,
             extractedContent.getInfoboxData(),
             metadata,
             finalURL
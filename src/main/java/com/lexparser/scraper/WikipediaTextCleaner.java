@@ -3,26 +3,26 @@ package com.lexparser.scraper;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 /**
  * Cleans and preprocesses Wikipedia text content for lexical analysis.
  * Removes footnotes, citations, and formatting artifacts while preserving meaningful content.
+ * The text is cleaned in a single pass: each rule is a small scanner stage pulling characters from the one
+ * before it, so no intermediate copy of the text is ever built.
  */
 public class WikipediaTextCleaner {
-    
-    // Patterns for various Wikipedia artifacts
-    private static final Pattern FOOTNOTE_REFS = Pattern.compile("\\[\\d+\\]");
-    private static final Pattern CITATION_NEEDED = Pattern.compile("\\[citation needed\\]", Pattern.CASE_INSENSITIVE);
-    private static final Pattern PARENTHETICAL_REFS = Pattern.compile("\\([^)]*\\b\\d{4}\\b[^)]*\\)");
-    private static final Pattern MULTIPLE_SPACES = Pattern.compile("\\s+");
-    private static final Pattern UNICODE_QUOTES = Pattern.compile("[\\u201C\\u201D\\u2018\\u2019]");
-    private static final Pattern DASH_VARIANTS = Pattern.compile("[\\u2013\\u2014]");
-    private static final Pattern PRONUNCIATION_GUIDES = Pattern.compile("\\([^)]*pronunciation[^)]*\\)", Pattern.CASE_INSENSITIVE);
-    
+
+    // Wikipedia artifacts, removed in this order
+    private static final char[] CITATION_NEEDED = "[citation needed]".toCharArray();
+    private static final char[] PRONUNCIATION = "pronunciation".toCharArray();
+
+    // \b treats letters and digits of any script as word characters up to Java 18 and only [a-zA-Z0-9_] from 19 on;
+    // year parentheticals are matched the way the regex on this runtime would
+    private static final boolean UNICODE_WORD_BOUNDARY = Pattern.compile("\\b").matcher("\u00e9").find();
+
     /**
      * Performs comprehensive cleaning of Wikipedia text content.
-     * 
+     *
      * @param rawText the raw text to clean
      * @return CleanedText object containing the processed content
      */
@@ -30,142 +30,394 @@ public class WikipediaTextCleaner {
         if (rawText == null || rawText.trim().isEmpty()) {
             return new CleanedText("", 0, 0);
         }
-        
-        String originalText = rawText;
-        int originalLength = originalText.length();
-        
-        String cleaned = rawText;
-        
-        // Remove footnote references
-        cleaned = FOOTNOTE_REFS.matcher(cleaned).replaceAll("");
-        
-        // Remove citation needed tags
-        cleaned = CITATION_NEEDED.matcher(cleaned).replaceAll("");
-        
-        // Remove parenthetical year references (e.g., "(born 1985)")
-        cleaned = PARENTHETICAL_REFS.matcher(cleaned).replaceAll("");
-        
-        // Remove pronunciation guides
-        cleaned = PRONUNCIATION_GUIDES.matcher(cleaned).replaceAll("");
-        
-        // Normalize unicode characters
-        cleaned = normalizeUnicodeCharacters(cleaned);
-        
-        // Clean up spacing and formatting
-        cleaned = normalizeWhitespace(cleaned);
-        
-        // Remove empty sentences and clean up punctuation
-        cleaned = cleanupPunctuation(cleaned);
-        
-        int finalLength = cleaned.length();
-        
-        return new CleanedText(cleaned, originalLength, finalLength);
-    }
-    
+
+        String cleaned = clean(rawText);
+        return new CleanedText(cleaned, rawText.length(), cleaned.length());
+    }
+
     /**
      * Cleans a list of text segments (paragraphs) and returns cleaned versions.
-     * 
+     *
      * @param textSegments list of text segments to clean
      * @return list of cleaned text segments
      */
     public List<String> cleanTextSegments(List<String> textSegments) {
         List<String> cleanedSegments = new ArrayList<>();
-        
+
         for (String segment : textSegments) {
             CleanedText cleaned = cleanText(segment);
             if (!cleaned.getCleanedText().trim().isEmpty()) {
                 cleanedSegments.add(cleaned.getCleanedText());
             }
         }
-        
+
         return cleanedSegments;
     }
-    
-    /**
-     * Normalizes Unicode characters to their ASCII equivalents where appropriate.
-     */
-    private String normalizeUnicodeCharacters(String text) {
-        String normalized = text;
-        
-        // Convert smart quotes to regular quotes
-        normalized = UNICODE_QUOTES.matcher(normalized).replaceAll("\"");
-        
-        // Convert em dashes and en dashes to regular hyphens
-        normalized = DASH_VARIANTS.matcher(normalized).replaceAll("-");
-        
-        // Handle other common Unicode normalizations
-        normalized = normalized.replace("…", "...");
-        normalized = normalized.replace("'", "'");
-        normalized = normalized.replace("'", "'");
-        
-        return normalized;
-    }
-    
+
     /**
-     * Normalizes whitespace throughout the text.
+     * Runs the removal stages and then, in the same loop, collapses whitespace, trims, fixes spacing around
+     * punctuation and keeps only the sentences that look like real ones.
      */
-    private String normalizeWhitespace(String text) {
-        // Replace multiple spaces with single space
-        String normalized = MULTIPLE_SPACES.matcher(text).replaceAll(" ");
-        
-        // Clean up line breaks and tabs
-        normalized = normalized.replace("\t", " ");
-        normalized = normalized.replace("\r\n", "\n");
-        normalized = normalized.replace("\r", "\n");
-        
-        // Remove excessive line breaks
-        normalized = normalized.replaceAll("\n\\s*\n\\s*\n", "\n\n");
-        
-        return normalized.trim();
-    }
-    
+    private static String clean(CharSequence rawText) {
+        Stage in = new UnicodeNormalizer(
+                new ParentheticalRemover(
+                        new ParentheticalRemover(
+                                new CitationNeededRemover(
+                                        new FootnoteRemover(
+                                                new Source(rawText))),
+                                WikipediaTextCleaner::holdsYear),
+                        WikipediaTextCleaner::mentionsPronunciation));
+
+        StringBuilder result = new StringBuilder(rawText.length());
+        StringBuilder sentence = new StringBuilder(256);
+        StringBuilder blanks = new StringBuilder(); // chars <= ' ' seen since the last visible one, dropped at the ends
+        boolean leading = true;
+        boolean inSpaceRun = false;
+        boolean heldSpace = false; // a separating space, dropped when punctuation follows
+        char last = 0; // last char of the text so far, after punctuation fixing
+
+        int c;
+        while ((c = in.next()) >= 0) {
+            // every whitespace run becomes one space
+            if (isRegexSpace(c)) {
+                if (inSpaceRun) continue;
+                inSpaceRun = true;
+                c = ' ';
+            } else {
+                inSpaceRun = false;
+            }
+            // trim
+            if (c <= ' ') {
+                if (!leading) blanks.append((char) c);
+                continue;
+            }
+            leading = false;
+            for (int i = 0; i < blanks.length(); i++) {
+                char b = blanks.charAt(i);
+                if (heldSpace) { // only single spaces are ever held: whitespace runs are collapsed
+                    heldSpace = false;
+                    last = append(' ', last, sentence, result);
+                }
+                if (b == ' ') {
+                    heldSpace = true;
+                } else {
+                    last = append(b, last, sentence, result);
+                }
+            }
+            blanks.setLength(0);
+            // no space before . ! ? , : ;
+            if (heldSpace) {
+                heldSpace = false;
+                if (!isClausePunctuation(c)) {
+                    last = append(' ', last, sentence, result);
+                }
+            }
+            // a space between a sentence end and a capital
+            if (isSentenceEnd(last) && c >= 'A' && c <= 'Z') {
+                last = append(' ', last, sentence, result);
+            }
+            last = append((char) c, last, sentence, result);
+        }
+        endSentence(sentence, result);
+        if (result.length() > 0) {
+            result.setLength(result.length() - 1); // the space after the last sentence
+        }
+        return result.toString();
+    }
+
+    // a space right after a sentence end splits sentences; everything else goes into the current sentence
+    private static char append(char c, char last, StringBuilder sentence, StringBuilder result) {
+        if (c == ' ' && isSentenceEnd(last)) {
+            endSentence(sentence, result);
+        } else {
+            sentence.append(c);
+        }
+        return c;
+    }
+
     /**
-     * Cleans up punctuation and removes malformed sentences.
+     * Appends a finished sentence if it is valid, with a closing period if it lacks one.
      */
-    private String cleanupPunctuation(String text) {
-        String cleaned = text;
-        
-        // Fix spacing around punctuation
-        cleaned = cleaned.replaceAll("\\s+([.!?,:;])", "$1");
-        cleaned = cleaned.replaceAll("([.!?])([A-Z])", "$1 $2");
-        
-        // Remove sentences that are too short or seem incomplete
-        String[] sentences = cleaned.split("(?<=[.!?])\\s+");
-        StringBuilder result = new StringBuilder();
-        
-        for (String sentence : sentences) {
-            sentence = sentence.trim();
-            if (isValidSentence(sentence)) {
-                result.append(sentence);
-                if (!sentence.endsWith(".") && !sentence.endsWith("!") && !sentence.endsWith("?")) {
-                    result.append(".");
-                }
-                result.append(" ");
+    private static void endSentence(StringBuilder sentence, StringBuilder result) {
+        int start = 0, end = sentence.length();
+        while (start < end && sentence.charAt(start) <= ' ') start++;
+        while (end > start && sentence.charAt(end - 1) <= ' ') end--;
+        if (isValidSentence(sentence, start, end)) {
+            result.append(sentence, start, end);
+            char final_ = sentence.charAt(end - 1);
+            if (final_ != '.' && final_ != '!' && final_ != '?') {
+                result.append('.');
             }
+            result.append(' ');
         }
-        
-        return result.toString().trim();
+        sentence.setLength(0);
     }
-    
+
     /**
      * Validates whether a sentence should be included in the cleaned text.
      */
-    private boolean isValidSentence(String sentence) {
-        if (sentence.length() < 10) {
+    private static boolean isValidSentence(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length < 10) {
             return false;
         }
-        
-        // Check for reasonable word count
-        String[] words = sentence.split("\\s+");
-        if (words.length < 3) {
+
+        // Check for reasonable word count; the ends are trimmed, so words are the whitespace runs plus one
+        int words = 1;
+        int letterCount = 0;
+        boolean space = false;
+        for (int i = start; i < end; i++) {
+            char ch = s.charAt(i);
+            boolean isSpace = isRegexSpace(ch);
+            if (isSpace && !space) words++;
+            space = isSpace;
+            if (Character.isLetter(ch)) letterCount++;
+        }
+        if (words < 3) {
             return false;
         }
-        
+
         // Avoid sentences that are mostly numbers or special characters
-        long letterCount = sentence.chars().filter(Character::isLetter).count();
-        return letterCount > sentence.length() * 0.5;
+        return letterCount > length * 0.5;
+    }
+
+    //<editor-fold desc="Character classes">
+    // \s
+    private static boolean isRegexSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isSentenceEnd(int c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static boolean isClausePunctuation(int c) {
+        return isSentenceEnd(c) || c == ',' || c == ':' || c == ';';
+    }
+
+    private static boolean isAsciiDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // what Pattern.CASE_INSENSITIVE does without UNICODE_CASE
+    private static boolean equalsAsciiIgnoreCase(int c, char lower) {
+        return c == lower || (c >= 'A' && c <= 'Z' && c + ('a' - 'A') == lower);
+    }
+
+    private static boolean isWordChar(int cp) {
+        if (UNICODE_WORD_BOUNDARY) {
+            return cp == '_' || Character.isLetterOrDigit(cp);
+        }
+        return cp == '_' || isAsciiDigit(cp) || (cp >= 'a' && cp <= 'z') || (cp >= 'A' && cp <= 'Z');
+    }
+
+    // a non-spacing mark counts as a word char when it sits on a letter or digit, as for \b
+    private static boolean hasBaseCharacter(char[] text, int i, int limit) {
+        for (int x = i; x >= 0; x--) {
+            int cp = Character.codePointAt(text, x, limit);
+            if (Character.isLetterOrDigit(cp)) return true;
+            if (Character.getType(cp) != Character.NON_SPACING_MARK) return false;
+        }
+        return false;
+    }
+
+    private static boolean isWordBefore(char[] text, int i, int limit) {
+        int cp = Character.codePointBefore(text, i, 0);
+        return isWordChar(cp) || (Character.getType(cp) == Character.NON_SPACING_MARK && hasBaseCharacter(text, i - 1, limit));
+    }
+
+    private static boolean isWordAt(char[] text, int i, int limit) {
+        int cp = Character.codePointAt(text, i, limit);
+        return isWordChar(cp) || (Character.getType(cp) == Character.NON_SPACING_MARK && hasBaseCharacter(text, i, limit));
+    }
+
+    // "( ... )" holding a word-bounded four-digit number, e.g. "(born 1985)"
+    private static boolean holdsYear(char[] text, int length) {
+        for (int i = 1; i + 4 < length; i++) {
+            if (isAsciiDigit(text[i]) && isAsciiDigit(text[i + 1]) && isAsciiDigit(text[i + 2]) && isAsciiDigit(text[i + 3])
+                    && !isWordBefore(text, i, length) && !isWordAt(text, i + 4, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean mentionsPronunciation(char[] text, int length) {
+        outer:
+        for (int i = 1; i + PRONUNCIATION.length < length; i++) {
+            for (int j = 0; j < PRONUNCIATION.length; j++) {
+                if (!equalsAsciiIgnoreCase(text[i + j], PRONUNCIATION[j])) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Scanner stages">
+    /*
+        Each stage hands out the text of the stage before it minus its own matches. Like the regex engine, a stage
+        looks ahead only as far as it needs to decide on a match; when there is none, the characters after the
+        candidate's first one are pushed back and scanned again, since the next match may start among them.
+     */
+    private abstract static class Stage {
+        private final Stage upstream;
+        private char[] pushedBack = new char[16]; // a stack, next char on top
+        private int pushedBackSize;
+        char[] span = new char[64]; // lookahead of the current candidate match
+        int spanLength;
+
+        Stage(Stage upstream) {
+            this.upstream = upstream;
+        }
+
+        // the next char of this stage's output, -1 at the end
+        abstract int next();
+
+        final int read() {
+            return pushedBackSize > 0 ? pushedBack[--pushedBackSize] : upstream.next();
+        }
+
+        final void addToSpan(int c) {
+            if (spanLength == span.length) span = java.util.Arrays.copyOf(span, spanLength * 2);
+            span[spanLength++] = (char) c;
+        }
+
+        // gives back span[from..spanLength) and then c (if not -1), to be read again in that order
+        final void unreadSpan(int from, int c) {
+            int needed = pushedBackSize + spanLength - from + 1;
+            if (needed > pushedBack.length) pushedBack = java.util.Arrays.copyOf(pushedBack, Math.max(needed, pushedBack.length * 2));
+            if (c >= 0) pushedBack[pushedBackSize++] = (char) c;
+            for (int i = spanLength - 1; i >= from; i--) {
+                pushedBack[pushedBackSize++] = span[i];
+            }
+        }
+    }
+
+    private static final class Source extends Stage {
+        private final CharSequence text;
+        private int position;
+
+        Source(CharSequence text) {
+            super(null);
+            this.text = text;
+        }
+
+        @Override
+        int next() {
+            return position < text.length() ? text.charAt(position++) : -1;
+        }
+    }
+
+    // footnote references such as "[12]"
+    private static final class FootnoteRemover extends Stage {
+        FootnoteRemover(Stage upstream) {
+            super(upstream);
+        }
+
+        @Override
+        int next() {
+            while (true) {
+                int c = read();
+                if (c != '[') return c;
+                spanLength = 0;
+                int d;
+                while (isAsciiDigit(d = read())) addToSpan(d);
+                if (d == ']' && spanLength > 0) continue;
+                unreadSpan(0, d);
+                return c;
+            }
+        }
+    }
+
+    // "[citation needed]", in any case
+    private static final class CitationNeededRemover extends Stage {
+        CitationNeededRemover(Stage upstream) {
+            super(upstream);
+        }
+
+        @Override
+        int next() {
+            while (true) {
+                int c = read();
+                if (c != '[') return c;
+                spanLength = 0;
+                int d = -1;
+                int j = 1;
+                for (; j < CITATION_NEEDED.length; j++) {
+                    d = read();
+                    if (d < 0 || !equalsAsciiIgnoreCase(d, CITATION_NEEDED[j])) break;
+                    addToSpan(d);
+                }
+                if (j == CITATION_NEEDED.length) continue;
+                unreadSpan(0, d);
+                return c;
+            }
+        }
+    }
+
+    private interface SpanTest {
+        boolean test(char[] text, int length);
     }
-    
+
+    // "( ... )" without a ')' inside, when the test accepts it (parentheses included in what it sees)
+    private static final class ParentheticalRemover extends Stage {
+        private final SpanTest test;
+
+        ParentheticalRemover(Stage upstream, SpanTest test) {
+            super(upstream);
+            this.test = test;
+        }
+
+        @Override
+        int next() {
+            while (true) {
+                int c = read();
+                if (c != '(') return c;
+                spanLength = 0;
+                addToSpan(c);
+                int d;
+                while ((d = read()) >= 0 && d != ')') addToSpan(d);
+                if (d == ')') {
+                    addToSpan(d);
+                    if (test.test(span, spanLength)) continue;
+                }
+                unreadSpan(1, -1);
+                return c;
+            }
+        }
+    }
+
+    // smart quotes to ", en and em dashes to -, the ellipsis to ...
+    private static final class UnicodeNormalizer extends Stage {
+        private int dots;
+
+        UnicodeNormalizer(Stage upstream) {
+            super(upstream);
+        }
+
+        @Override
+        int next() {
+            if (dots > 0) {
+                dots--;
+                return '.';
+            }
+            int c = read();
+            switch (c) {
+                case '\u201C', '\u201D', '\u2018', '\u2019':
+                    return '"';
+                case '\u2013', '\u2014':
+                    return '-';
+                case '\u2026':
+                    dots = 2;
+                    return '.';
+                default:
+                    return c;
+            }
+        }
+    }
+    //</editor-fold>
+
     /**
      * Container class for cleaned text results.
      */
@@ -173,24 +425,24 @@ public class WikipediaTextCleaner {
         private final String cleanedText;
         private final int originalLength;
         private final int finalLength;
-        
+
         public CleanedText(String cleanedText, int originalLength, int finalLength) {
             this.cleanedText = cleanedText;
             this.originalLength = originalLength;
             this.finalLength = finalLength;
         }
-        
+
         public String getCleanedText() { return cleanedText; }
         public int getOriginalLength() { return originalLength; }
         public int getFinalLength() { return finalLength; }
-        
+
         /**
          * Calculates the compression ratio of the cleaning process.
          */
         public double getCompressionRatio() {
             return originalLength > 0 ? (double) finalLength / originalLength : 0.0;
         }
-        
+
         /**
          * Returns the number of characters removed during cleaning.
          */
@@ -198,4 +450,4 @@ public class WikipediaTextCleaner {
             return originalLength - finalLength;
         }
     }
-} 
\ No newline at end of file
+}
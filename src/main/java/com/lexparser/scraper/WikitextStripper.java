@@ -0,0 +1,213 @@
+package com.lexparser.scraper;
+
+import org.jsoup.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns MediaWiki wikitext, as found in the {@code <text>} of a dump, into plain prose paragraphs.
+ * Templates, tables, references, comments, files, categories and interlanguage links are dropped; links and
+ * external links are replaced by their label; bold/italic quotes and other html tags are removed but their
+ * content is kept. Headings, list items and table rows are not prose and do not make it into the paragraphs.
+ * This is a best-effort markup stripper, not a wikitext renderer: it needs no templates and works offline.
+ */
+public final class WikitextStripper {
+
+    // tags whose content is not prose either
+    private static final Set<String> DROPPED_TAGS = Set.of(
+            "ref", "gallery", "math", "chem", "timeline", "score", "syntaxhighlight", "source", "pre",
+            "imagemap", "graph", "mapframe", "maplink", "templatedata", "references", "table");
+    // link prefixes that are not links into the article text
+    private static final Set<String> DROPPED_NAMESPACES = Set.of(
+            "file", "image", "media", "category", "wikipedia", "wp", "template", "help", "portal", "special");
+    private static final Pattern INTERLANGUAGE = Pattern.compile("[a-z]{2,3}(-[a-z]+)*");
+    private static final Pattern EMPTY_PARENS = Pattern.compile("\\(\\s*[,;]?\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s\\u00A0]+"); // &nbsp; included
+
+    private WikitextStripper() {
+    }
+
+    /**
+     * The prose paragraphs of an article, without markup, in order.
+     */
+    public static List<String> paragraphs(String wikitext) {
+        String stripped = strip(wikitext);
+        List<String> paragraphs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : stripped.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || isHeading(trimmed) || isStructural(trimmed)) {
+                endParagraph(current, paragraphs);
+                continue;
+            }
+            if (current.length() > 0) current.append(' ');
+            current.append(trimmed);
+        }
+        endParagraph(current, paragraphs);
+        return paragraphs;
+    }
+
+    /**
+     * The prose of an article as one text, paragraphs separated by blank lines.
+     */
+    public static String plainText(String wikitext) {
+        return String.join("\n\n", paragraphs(wikitext));
+    }
+
+    private static void endParagraph(StringBuilder current, List<String> paragraphs) {
+        if (current.length() == 0) return;
+        String text = Parser.unescapeEntities(current.toString(), false);
+        text = EMPTY_PARENS.matcher(text).replaceAll("");
+        text = WHITESPACE.matcher(text).replaceAll(" ").trim();
+        if (!text.isEmpty()) paragraphs.add(text);
+        current.setLength(0);
+    }
+
+    private static boolean isHeading(String line) {
+        return line.length() > 1 && line.charAt(0) == '=' && line.charAt(line.length() - 1) == '=';
+    }
+
+    // list items, definition lists, indents, table leftovers, magic words and the like
+    private static boolean isStructural(String line) {
+        char c = line.charAt(0);
+        return c == '*' || c == '#' || c == ':' || c == ';' || c == '|' || c == '!' || c == '{' || c == '}'
+                || line.startsWith("----");
+    }
+
+    //<editor-fold desc="Inline markup">
+    // one pass over the text, nested constructs are skipped as a whole
+    static String strip(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        int n = s.length();
+        int i = 0;
+        int end;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '<' && s.startsWith("<!--", i)) {
+                end = s.indexOf("-->", i + 4);
+                i = end < 0 ? n : end + 3;
+            } else if (c == '{' && s.startsWith("{{", i) && (end = skipBalanced(s, i, "{{", "}}")) > 0) {
+                i = end;
+            } else if (c == '{' && s.startsWith("{|", i) && atLineStart(s, i) && (end = skipBalanced(s, i, "{|", "|}")) > 0) {
+                i = end;
+            } else if (c == '[' && s.startsWith("[[", i) && (end = skipBalanced(s, i, "[[", "]]")) > 0) {
+                appendLink(s.substring(i + 2, end - 2), out);
+                i = end;
+            } else if (c == '[' && isExternalLink(s, i + 1) && (end = s.indexOf(']', i)) > 0 && !hasNewline(s, i, end)) {
+                int space = s.indexOf(' ', i);
+                if (space >= 0 && space < end) {
+                    out.append(strip(s.substring(space + 1, end)));
+                }
+                i = end + 1;
+            } else if (c == '<') {
+                i = skipTag(s, i, out);
+            } else if (c == '\'' && s.startsWith("''", i)) {
+                int run = i;
+                while (run < n && s.charAt(run) == '\'') run++;
+                int quotes = run - i;
+                // '' italic, ''' bold, ''''' both; anything beyond that is literal apostrophes
+                int literal = quotes == 4 ? 1 : quotes > 5 ? quotes - 5 : 0;
+                for (int k = 0; k < literal; k++) out.append('\'');
+                i = run;
+            } else if (c == '_' && s.startsWith("__", i)) {
+                end = i + 2;
+                while (end < n && Character.isUpperCase(s.charAt(end))) end++;
+                if (end > i + 2 && s.startsWith("__", end)) {
+                    i = end + 2; // __NOTOC__ and friends
+                } else {
+                    out.append(c);
+                    i++;
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    // index after the construct opening at i, or -1 if it is never closed (then it is taken as plain text)
+    private static int skipBalanced(String s, int i, String open, String close) {
+        int depth = 0;
+        int n = s.length();
+        while (i < n) {
+            if (s.startsWith(open, i)) {
+                depth++;
+                i += open.length();
+            } else if (s.startsWith(close, i)) {
+                depth--;
+                i += close.length();
+                if (depth == 0) return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean atLineStart(String s, int i) {
+        while (i > 0 && (s.charAt(i - 1) == ' ' || s.charAt(i - 1) == '\t')) i--;
+        return i == 0 || s.charAt(i - 1) == '\n';
+    }
+
+    private static boolean hasNewline(String s, int from, int to) {
+        int nl = s.indexOf('\n', from);
+        return nl >= 0 && nl < to;
+    }
+
+    private static boolean isExternalLink(String s, int i) {
+        return s.startsWith("http://", i) || s.startsWith("https://", i) || s.startsWith("ftp://", i) || s.startsWith("//", i);
+    }
+
+    // [[target]], [[target|label]], [[:Category:x]]; files, categories and interlanguage links leave nothing
+    private static void appendLink(String inner, StringBuilder out) {
+        int pipe = inner.indexOf('|');
+        String target = pipe < 0 ? inner : inner.substring(0, pipe);
+        boolean colonLink = target.startsWith(":");
+        int colon = target.indexOf(':', colonLink ? 1 : 0);
+        if (!colonLink && colon > 0) {
+            String prefix = target.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            if (DROPPED_NAMESPACES.contains(prefix) || INTERLANGUAGE.matcher(prefix).matches()) {
+                return;
+            }
+        }
+        String label = pipe < 0 ? (colonLink ? target.substring(1) : target) : inner.substring(pipe + 1);
+        out.append(strip(label));
+    }
+
+    // html-ish tags: the dropped ones go with their content, the rest only lose the tag itself
+    private static int skipTag(String s, int i, StringBuilder out) {
+        int n = s.length();
+        int nameStart = i + 1;
+        boolean closing = nameStart < n && s.charAt(nameStart) == '/';
+        if (closing) nameStart++;
+        int nameEnd = nameStart;
+        while (nameEnd < n && Character.isLetter(s.charAt(nameEnd))) nameEnd++;
+        int end = s.indexOf('>', nameEnd);
+        if (nameEnd == nameStart || end < 0) {
+            out.append('<'); // a plain "<", e.g. "x < y"
+            return i + 1;
+        }
+        String name = s.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+        boolean selfClosing = s.charAt(end - 1) == '/';
+        if (closing || selfClosing || !DROPPED_TAGS.contains(name)) {
+            if (name.equals("br") || name.equals("p") || name.equals("div")) out.append(' ');
+            return end + 1;
+        }
+        int close = indexOfIgnoreCase(s, "</" + name, end + 1);
+        int closeEnd = close < 0 ? -1 : s.indexOf('>', close);
+        return closeEnd < 0 ? end + 1 : closeEnd + 1; // never closed: only the tag goes
+    }
+
+    private static int indexOfIgnoreCase(String s, String needle, int from) {
+        for (int i = from; i + needle.length() <= s.length(); i++) {
+            if (s.regionMatches(true, i, needle, 0, needle.length())) return i;
+        }
+        return -1;
+    }
+    //</editor-fold>
+}
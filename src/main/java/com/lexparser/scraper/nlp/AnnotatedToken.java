@@ -17,7 +17,7 @@ public class AnnotatedToken {
 
     public boolean equalsSelective(AnnotatedToken other)
     {
-        return this.form.equalsIgnoreCase(other.form) &&  this.pos.equalsIgnoreCase(other.pos) && this.lemma.equalsIgnoreCase(other.lemma);
+        return CaseFolding.equals(this.form, other.form) && CaseFolding.equals(this.pos, other.pos) && CaseFolding.equals(this.lemma, other.lemma);
     }
 
     public boolean equalsSelectiveCaseSensitive(AnnotatedToken other) {
@@ -36,6 +36,12 @@ public class AnnotatedToken {
         AnnotatedToken other = (AnnotatedToken) obj;
         return equalsSelective(other);
     }
+
+    @Override
+    public int hashCode() {
+        // consistent with equals: tokens equal ignoring case fold to the same strings
+        return java.util.Objects.hash(CaseFolding.fold(form), CaseFolding.fold(pos), CaseFolding.fold(lemma));
+    }
 }
 
 /*
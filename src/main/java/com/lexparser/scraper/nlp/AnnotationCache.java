@@ -0,0 +1,291 @@
+package com.lexparser.scraper.nlp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * On-disk cache of finished annotations, keyed by a hash of the corpus text and the model identities.
+ * Entries are dictionary-encoded (every distinct form/POS/lemma string once, tokens as varint ids) and deflated.
+ * Eviction is LRU by file modification time, which is bumped on every hit.
+ */
+public class AnnotationCache {
+
+    public static final String DIR_PROPERTY = "gw.annotationCache.dir";
+    public static final String MAX_BYTES_PROPERTY = "gw.annotationCache.maxBytes";
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final int MAGIC = 0x47574143; // "GWAC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".ann";
+
+    private static AnnotationCache defaultCache;
+
+    private final Path directory;
+    private final long maxBytes;
+    // disk writes happen off the annotation pool and off the EDT, one at a time
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "annotation-cache-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AnnotationCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cache configured through the {@value #DIR_PROPERTY} / {@value #MAX_BYTES_PROPERTY} system properties,
+     * defaulting to ~/.cache/gw-swing-alternative/annotations and 256 MB.
+     */
+    public static synchronized AnnotationCache getDefault() {
+        if (defaultCache == null) {
+            String dir = System.getProperty(DIR_PROPERTY);
+            Path path = dir != null ? Paths.get(dir)
+                    : Paths.get(System.getProperty("user.home"), ".cache", "gw-swing-alternative", "annotations");
+            long max = Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+            defaultCache = new AnnotationCache(path, max);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Looks up the annotations of {@code text}.
+     *
+     * @return a finished processor rebuilt from disk, or null on a miss or an unreadable entry
+     */
+    public NLPProcessing get(String text) {
+        Path entry = entryFor(text);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try {
+            NLPProcessing p = read(entry, text);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return p;
+        } catch (IOException | RuntimeException e) {
+            // corrupt or foreign entry, drop it and let the caller annotate again
+            try {
+                Files.deleteIfExists(entry);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores the annotations of a finished processor. Failures are swallowed; the cache is an optimisation.
+     */
+    public void put(NLPProcessing processed) {
+        if (!processed.isComplete() || processed.getText() == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path entry = entryFor(processed.getText());
+            Path tmp = Files.createTempFile(directory, "tmp", SUFFIX + ".part");
+            try {
+                write(tmp, processed);
+                Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            evict();
+        } catch (IOException | RuntimeException e) {
+            // best effort
+        }
+    }
+
+    public void putAsync(NLPProcessing processed) {
+        writer.execute(() -> put(processed));
+    }
+
+    public Path getDirectory() { return directory; }
+    public long getMaxBytes() { return maxBytes; }
+
+    //<editor-fold desc="Keying">
+    private Path entryFor(String text) {
+        return directory.resolve(key(text) + SUFFIX);
+    }
+
+    static String key(String text) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(NLPProcessing.modelIdentity().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Eviction">
+    private synchronized void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> s = Files.list(directory)) {
+            entries = new ArrayList<>(s.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList());
+        }
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, Long> touched = new HashMap<>();
+        long total = 0;
+        for (Path p : entries) {
+            long size = Files.size(p);
+            sizes.put(p, size);
+            touched.put(p, Files.getLastModifiedTime(p).toMillis());
+            total += size;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(touched::get)); // least recently used first
+        for (Path p : entries) {
+            if (total <= maxBytes) break;
+            Files.deleteIfExists(p);
+            total -= sizes.get(p);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Binary format">
+    /*
+        int magic, int version
+        varint sentenceCount; per sentence: string
+        varint dictSize; per entry: string
+        per sentence: varint tokenCount; per token: varint formId, varint posId, varint lemmaId
+        string = varint byteLength + utf-8 bytes
+     */
+    private static void write(Path file, NLPProcessing p) throws IOException {
+        List<List<AnnotatedToken>> doc = p.getWordSentences();
+        String[] sentences = p.getSentences();
+
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> dict = new ArrayList<>();
+        for (List<AnnotatedToken> sentence : doc) {
+            for (AnnotatedToken t : sentence) {
+                intern(t.getForm(), ids, dict);
+                intern(t.getPos(), ids, dict);
+                intern(t.getLemma(), ids, dict);
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(Files.newOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeVarInt(out, doc.size());
+            for (int i = 0; i < doc.size(); i++) {
+                writeString(out, sentences != null && sentences[i] != null ? sentences[i] : "");
+            }
+            writeVarInt(out, dict.size());
+            for (String s : dict) {
+                writeString(out, s);
+            }
+            for (List<AnnotatedToken> sentence : doc) {
+                writeVarInt(out, sentence.size());
+                for (AnnotatedToken t : sentence) {
+                    writeVarInt(out, ids.get(t.getForm()));
+                    writeVarInt(out, ids.get(t.getPos()));
+                    writeVarInt(out, ids.get(t.getLemma()));
+                }
+            }
+        }
+    }
+
+    private static NLPProcessing read(Path file, String text) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not an annotation cache entry: " + file);
+            }
+            // every count and length is checked before anything is allocated for it, a damaged entry is an
+            // IOException like any other and not an OutOfMemoryError. nothing in an entry for this text gets
+            // anywhere near four times its length: sentences, tokens and dictionary entries all come out of it
+            int max = (int) Math.min(Integer.MAX_VALUE, 4L * text.length() + 64);
+            int n = readSize(in, max);
+            String[] sentences = new String[n];
+            for (int i = 0; i < n; i++) {
+                sentences[i] = readString(in, max);
+            }
+            String[] dict = new String[readSize(in, max)];
+            for (int i = 0; i < dict.length; i++) {
+                dict[i] = readString(in, max);
+            }
+            int tokensLeft = max;
+            List<List<AnnotatedToken>> doc = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int len = readSize(in, tokensLeft);
+                tokensLeft -= len;
+                List<AnnotatedToken> sentence = new ArrayList<>(len);
+                for (int j = 0; j < len; j++) {
+                    String form = dict[readSize(in, dict.length - 1)];
+                    String pos = dict[readSize(in, dict.length - 1)];
+                    String lemma = dict[readSize(in, dict.length - 1)];
+                    sentence.add(new AnnotatedToken(form, pos, lemma));
+                }
+                doc.add(sentence);
+            }
+            return NLPProcessing.fromAnnotations(text, sentences, doc);
+        }
+    }
+
+    private static void intern(String s, Map<String, Integer> ids, List<String> dict) {
+        if (!ids.containsKey(s)) {
+            ids.put(s, dict.size());
+            dict.add(s);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, int maxBytes) throws IOException {
+        byte[] bytes = new byte[readSize(in, maxBytes)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // a count, length or id, in [0, max]
+    private static int readSize(DataInputStream in, int max) throws IOException {
+        int v = readVarInt(in);
+        if (v < 0 || v > max) {
+            throw new IOException("Corrupt annotation cache entry");
+        }
+        return v;
+    }
+    //</editor-fold>
+}
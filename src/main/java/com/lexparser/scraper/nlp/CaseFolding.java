@@ -0,0 +1,42 @@
+package com.lexparser.scraper.nlp;
+
+/**
+ * The one case-insensitivity rule used by filtering, matching and the folded index.
+ * Folds per code point as lower(upper(c)), which is exactly the per-character rule of
+ * {@link String#equalsIgnoreCase}: fold(a).equals(fold(b)) iff a.equalsIgnoreCase(b).
+ */
+public final class CaseFolding {
+
+    private CaseFolding() {
+    }
+
+    public static String fold(String s) {
+        // fast path: nothing to fold, no allocation
+        int i = 0;
+        int n = s.length();
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            if (foldCodePoint(cp) != cp) break;
+            i += Character.charCount(cp);
+        }
+        if (i == n) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(n);
+        sb.append(s, 0, i);
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            sb.appendCodePoint(foldCodePoint(cp));
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+
+    public static boolean equals(String a, String b) {
+        return a.equalsIgnoreCase(b);
+    }
+
+    private static int foldCodePoint(int cp) {
+        return Character.toLowerCase(Character.toUpperCase(cp));
+    }
+}
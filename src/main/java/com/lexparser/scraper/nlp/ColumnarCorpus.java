@@ -0,0 +1,303 @@
+package com.lexparser.scraper.nlp;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column store for one annotated document.
+ * Forms and lemmas are interned into a per-corpus dictionary and kept as int id columns,
+ * POS tags are a byte column over the UD tagset, and a prefix-sum array marks where each sentence starts.
+ * Token positions are global, i.e. sentence s spans [sentenceStart(s), sentenceEnd(s)).
+ *
+ * Single writer (appendSentence, in document order), any number of readers. Readers only ever see
+ * whole sentences: after each sentence the writer publishes an immutable {@link View} of the array references and
+ * counts through one volatile field, and every read goes through the view it finds there. The writer only ever
+ * writes past the published counts or into fresh copies, so what a view covers never changes under a reader.
+ *
+ * A corpus can also be {@link #map mapped} onto a {@link CorpusFile} instead: the columns and the dictionary are then
+ * read from the file as they are accessed, and the term lookup behind {@link #termId} is only filled on first use.
+ */
+public final class ColumnarCorpus {
+
+    // closed UPOS set, https://universaldependencies.org/u/pos/
+    public static final String[] UD_TAGS = {
+            "ADJ", "ADP", "ADV", "AUX", "CCONJ", "DET", "INTJ", "NOUN", "NUM",
+            "PART", "PRON", "PROPN", "PUNCT", "SCONJ", "SYM", "VERB", "X"
+    };
+    static final int MAX_TAGS = 256; // codes are one byte
+
+    // dictionary shared by forms and lemmas (most lemmas are also forms)
+    private final ConcurrentHashMap<String, Integer> termIds = new ConcurrentHashMap<>();
+    private String[] terms = new String[256];
+    private int termCount;
+
+    // tagset: UD first, anything else the model emits is appended per corpus
+    private final ConcurrentHashMap<String, Byte> tagCodes = new ConcurrentHashMap<>();
+    private String[] tags = Arrays.copyOf(UD_TAGS, 32);
+    private int tagCount = UD_TAGS.length;
+
+    private int[] formIds = new int[1024];
+    private int[] lemmaIds = new int[1024];
+    private byte[] posCodes = new byte[1024];
+    private int[] sentenceStarts = new int[64 + 1]; // sentenceStarts[s + 1] is the end of s
+    private int sentences; // writer side; readers go through `published`
+    private CorpusFile file; // set instead of the arrays when mapped
+    private volatile boolean termIdsFilled = true; // false for a mapped corpus until termId() is first asked
+    private volatile View published = new View(this);
+
+    /**
+     * What a reader may index: the arrays as of one publish, and how much of each is filled.
+     * Hot loops can take one view and index it directly instead of going through the corpus per token.
+     */
+    public static final class View {
+        private final int[] formIds, lemmaIds, sentenceStarts;
+        private final byte[] posCodes;
+        private final String[] terms, tags;
+        private final CorpusFile file; // non-null when mapped; the arrays above except tags are null then
+        private final int sentences, tokens, termCount, tagCount;
+
+        private View(ColumnarCorpus c) {
+            formIds = c.formIds;
+            lemmaIds = c.lemmaIds;
+            posCodes = c.posCodes;
+            sentenceStarts = c.sentenceStarts;
+            terms = c.terms;
+            tags = c.tags;
+            file = c.file;
+            sentences = file != null ? file.sentenceCount() : c.sentences;
+            tokens = file != null ? file.tokenCount() : c.sentenceStarts[c.sentences];
+            termCount = file != null ? file.vocabularySize() : c.termCount;
+            tagCount = c.tagCount;
+        }
+
+        public int sentenceCount() { return sentences; }
+        public int tokenCount() { return tokens; }
+        public int vocabularySize() { return termCount; }
+        public int tagsetSize() { return tagCount; }
+        public int formId(int token) {
+            java.util.Objects.checkIndex(token, tokens);
+            return file != null ? file.formId(token) : formIds[token];
+        }
+        public int lemmaId(int token) {
+            java.util.Objects.checkIndex(token, tokens);
+            return file != null ? file.lemmaId(token) : lemmaIds[token];
+        }
+        public int posCode(int token) {
+            java.util.Objects.checkIndex(token, tokens);
+            return file != null ? file.posCode(token) : posCodes[token] & 0xFF;
+        }
+        public String term(int id) {
+            java.util.Objects.checkIndex(id, termCount);
+            return file != null ? file.term(id) : terms[id];
+        }
+        public String tag(int code) { return tags[java.util.Objects.checkIndex(code, tagCount)]; }
+
+        // s in [0, sentences]; start(sentences) is the token count
+        private int start(int s) { return file != null ? file.sentenceStart(s) : sentenceStarts[s]; }
+    }
+
+    public ColumnarCorpus() {
+        for (int i = 0; i < UD_TAGS.length; i++) {
+            tagCodes.put(UD_TAGS[i], (byte) i);
+        }
+    }
+
+    //<editor-fold desc="Writing">
+    void appendSentence(String[] forms, String[] pos, String[] lemmas) {
+        int s = sentences;
+        int start = sentenceStarts[s];
+        int end = start + forms.length;
+        if (end > formIds.length) {
+            int cap = Math.max(end, formIds.length * 2);
+            formIds = Arrays.copyOf(formIds, cap);
+            lemmaIds = Arrays.copyOf(lemmaIds, cap);
+            posCodes = Arrays.copyOf(posCodes, cap);
+        }
+        for (int j = 0; j < forms.length; j++) {
+            formIds[start + j] = intern(forms[j]);
+            lemmaIds[start + j] = intern(lemmas[j]);
+            posCodes[start + j] = tagCode(pos[j]);
+        }
+        if (s + 2 > sentenceStarts.length) {
+            sentenceStarts = Arrays.copyOf(sentenceStarts, sentenceStarts.length * 2);
+        }
+        sentenceStarts[s + 1] = end;
+        sentences = s + 1;
+        published = new View(this); // publish
+    }
+
+    private int intern(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) {
+            return id;
+        }
+        if (termCount == terms.length) {
+            terms = Arrays.copyOf(terms, termCount * 2);
+        }
+        terms[termCount] = term;
+        termIds.put(term, termCount);
+        return termCount++;
+    }
+
+    private byte tagCode(String tag) {
+        Byte code = tagCodes.get(tag);
+        if (code != null) {
+            return code;
+        }
+        if (tagCount == MAX_TAGS) {
+            throw new IllegalStateException("More than " + MAX_TAGS + " distinct POS tags");
+        }
+        if (tagCount == tags.length) {
+            tags = Arrays.copyOf(tags, tagCount * 2);
+        }
+        tags[tagCount] = tag;
+        tagCodes.put(tag, (byte) tagCount);
+        return (byte) tagCount++;
+    }
+
+    /**
+     * Fills an empty corpus with finished columns in one go, e.g. those of another corpus.
+     * The arrays are taken over, not copied; {@code tags} must start with {@link #UD_TAGS}.
+     */
+    void load(String[] terms, String[] tags, int[] formIds, int[] lemmaIds, byte[] posCodes, int[] sentenceStarts) {
+        for (int id = 0; id < terms.length; id++) {
+            termIds.put(terms[id], id);
+        }
+        for (int code = UD_TAGS.length; code < tags.length; code++) {
+            tagCodes.put(tags[code], (byte) code);
+        }
+        this.terms = terms;
+        termCount = terms.length;
+        this.tags = tags;
+        tagCount = tags.length;
+        this.formIds = formIds;
+        this.lemmaIds = lemmaIds;
+        this.posCodes = posCodes;
+        this.sentenceStarts = sentenceStarts;
+        sentences = sentenceStarts.length - 1;
+        published = new View(this); // publish
+    }
+
+    /**
+     * Reads an empty corpus from a checked {@link CorpusFile} from now on, without copying anything but the tagset.
+     */
+    void map(CorpusFile file) {
+        String[] tags = new String[file.tagsetSize()];
+        for (int code = 0; code < tags.length; code++) {
+            tags[code] = file.tag(code);
+        }
+        for (int code = UD_TAGS.length; code < tags.length; code++) {
+            tagCodes.put(tags[code], (byte) code);
+        }
+        this.tags = tags;
+        tagCount = tags.length;
+        formIds = lemmaIds = sentenceStarts = null;
+        posCodes = null;
+        terms = null;
+        this.file = file;
+        termIdsFilled = false;
+        published = new View(this); // publish
+    }
+
+    /**
+     * Takes over the columns of a trimmed corpus that is not used anymore.
+     */
+    void load(ColumnarCorpus finished) {
+        load(finished.terms, Arrays.copyOf(finished.tags, finished.tagCount),
+                finished.formIds, finished.lemmaIds, finished.posCodes, finished.sentenceStarts);
+    }
+
+    /**
+     * Gives the columns their final size once nothing is appended anymore.
+     */
+    void trim() {
+        int tokens = tokenCount();
+        formIds = Arrays.copyOf(formIds, tokens);
+        lemmaIds = Arrays.copyOf(lemmaIds, tokens);
+        posCodes = Arrays.copyOf(posCodes, tokens);
+        sentenceStarts = Arrays.copyOf(sentenceStarts, sentences + 1);
+        terms = Arrays.copyOf(terms, termCount);
+        published = new View(this); // re-publish the trimmed arrays
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Reading">
+    /**
+     * The columns as far as they are published right now. Stays valid, and unchanged, while more is appended.
+     */
+    public View view() { return published; }
+
+    public int sentenceCount() { return published.sentences; }
+    public int tokenCount() { return published.tokens; }
+    public int sentenceStart(int s) {
+        View v = published;
+        return v.start(java.util.Objects.checkIndex(s, v.sentences + 1));
+    }
+    public int sentenceEnd(int s) {
+        View v = published;
+        return v.start(java.util.Objects.checkIndex(s + 1, v.sentences + 1));
+    }
+    public int sentenceLength(int s) { return sentenceEnd(s) - sentenceStart(s); }
+
+    // sentence containing global token position `token`
+    public int sentenceOf(int token) {
+        View v = published;
+        int lo = 0, hi = v.sentences - 1;
+        // last sentence whose start <= token; empty sentences share their start with the next one
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (v.start(mid) <= token) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public int formId(int token) { return published.formId(token); }
+    public int lemmaId(int token) { return published.lemmaId(token); }
+    public int posCode(int token) { return published.posCode(token); }
+
+    public String form(int token) {
+        View v = published;
+        return v.term(v.formId(token));
+    }
+    public String lemma(int token) {
+        View v = published;
+        return v.term(v.lemmaId(token));
+    }
+    public String pos(int token) {
+        View v = published;
+        return v.tag(v.posCode(token));
+    }
+
+    public AnnotatedToken token(int token) {
+        View v = published;
+        return new AnnotatedToken(v.term(v.formId(token)), v.tag(v.posCode(token)), v.term(v.lemmaId(token)));
+    }
+
+    // only the published terms and tags; one being interned for a sentence still in progress doesn't count yet
+    public int vocabularySize() { return published.termCount; }
+    public String term(int id) { return published.term(id); }
+    // -1 if the string never occurs as a form or lemma
+    public int termId(String term) {
+        if (!termIdsFilled) fillTermIds();
+        return termIds.getOrDefault(term, -1);
+    }
+
+    // a mapped dictionary is only decoded into the lookup once something is looked up by string
+    private synchronized void fillTermIds() {
+        if (termIdsFilled) return;
+        for (int id = 0, n = file.vocabularySize(); id < n; id++) {
+            termIds.putIfAbsent(file.term(id), id);
+        }
+        termIdsFilled = true;
+    }
+
+    public int tagsetSize() { return published.tagCount; }
+    public String tag(int code) { return published.tag(code); }
+    // -1 if the tag is neither UD nor seen in this corpus
+    public int tagCodeOf(String tag) {
+        Byte code = tagCodes.get(tag);
+        return code == null ? -1 : code & 0xFF;
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,391 @@
+package com.lexparser.scraper.nlp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A finished corpus saved as its columns, see {@link ColumnarCorpus}: the dictionary of forms and lemmas, the form
+ * and lemma id columns, the POS byte column and the sentence starts, plus the original text and some metadata.
+ * <p>
+ * Every section is mapped on its own when the file is opened. Only the header, the tagset and the metadata are
+ * read onto the heap; the columns are checked in one pass over the mapping, so that nothing read from them later can
+ * be out of range, and otherwise left where they are. Opening takes milliseconds and next to no heap whatever the
+ * size of the corpus. {@link #sentence(int)} decodes one sentence straight from the mapping, terms are decoded on
+ * first use. {@link #asNLPProcessing()} is a regular, finished processor over the same mapping: sentences are read
+ * as they are shown, and the {@link InvertedIndex} is only built when the first lookup needs it.
+ */
+public final class CorpusFile {
+
+    public static final String SUFFIX = ".gwc";
+
+    private static final int MAGIC = 0x47574346; // "GWCF"
+    private static final int FORMAT_VERSION = 1;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+        header: int magic, int version, int sentenceCount, int tokenCount, int termCount, int tagCount,
+                long offset of each section below, then the file size
+        sections, each starting 8-aligned:
+          SENTENCES  int[sentenceCount + 1], sentence s spans tokens [starts[s], starts[s + 1])
+          FORMS      int[tokenCount], term ids
+          LEMMAS     int[tokenCount], term ids
+          POS        byte[tokenCount], tag codes
+          TERMS      int[termCount + 1], where term i starts in TERM_BYTES
+          TERM_BYTES utf-8
+          TAGS       string[tagCount], the UD tags first
+          META       string url, string loadDate, int n, string[n] filterSchemes
+          TEXT       utf-8, up to the end of the file
+        string = int byteLength (-1 for null) + utf-8 bytes
+     */
+    private static final int SENTENCES = 0, FORMS = 1, LEMMAS = 2, POS = 3, TERMS = 4, TERM_BYTES = 5,
+            TAGS = 6, META = 7, TEXT = 8, SECTIONS = 9;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + (SECTIONS + 1) * Long.BYTES;
+
+    /**
+     * What is saved besides the annotations.
+     *
+     * @param url           where the corpus was loaded from
+     * @param loadDate      when it was loaded, ISO-8601
+     * @param filterSchemes filter schemes recorded for it, in their list entry form
+     */
+    public record Metadata(String url, String loadDate, List<String> filterSchemes) {
+        public Metadata {
+            filterSchemes = filterSchemes == null ? List.of() : List.copyOf(filterSchemes);
+        }
+    }
+
+    private final Path path;
+    private final int sentenceCount, tokenCount, termCount;
+    private final IntBuffer sentenceStarts, formIds, lemmaIds, termStarts;
+    private final ByteBuffer posCodes, termBytes, text;
+    private final String[] tags;
+    private final Metadata metadata;
+    private String[] terms; // decoded on first use
+
+    private CorpusFile(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IOException("Not a corpus file: " + path);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ORDER);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a corpus file: " + path);
+        }
+        sentenceCount = header.getInt();
+        tokenCount = header.getInt();
+        termCount = header.getInt();
+        int tagCount = header.getInt();
+        long[] offsets = new long[SECTIONS + 1];
+        for (int i = 0; i <= SECTIONS; i++) {
+            offsets[i] = header.getLong();
+        }
+        if (sentenceCount < 0 || tokenCount < 0 || termCount < 0 || tagCount < ColumnarCorpus.UD_TAGS.length
+                || tagCount > ColumnarCorpus.MAX_TAGS
+                || offsets[0] != HEADER_SIZE || offsets[SECTIONS] != size) {
+            throw corrupt();
+        }
+        for (int i = 0; i < SECTIONS; i++) {
+            if (offsets[i + 1] < offsets[i] || offsets[i + 1] - offsets[i] > Integer.MAX_VALUE) throw corrupt();
+        }
+        ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], offsets[i + 1] - offsets[i]).order(ORDER);
+        }
+        sentenceStarts = ints(sections[SENTENCES], sentenceCount + 1L);
+        formIds = ints(sections[FORMS], tokenCount);
+        lemmaIds = ints(sections[LEMMAS], tokenCount);
+        posCodes = sections[POS];
+        termStarts = ints(sections[TERMS], termCount + 1L);
+        termBytes = sections[TERM_BYTES];
+        text = sections[TEXT];
+        if (posCodes.capacity() < tokenCount || sentenceStarts.get(sentenceCount) != tokenCount
+                || termStarts.get(termCount) > termBytes.capacity()) {
+            throw corrupt();
+        }
+
+        ByteBuffer tagSection = sections[TAGS];
+        if (tagCount > tagSection.capacity() / Integer.BYTES) throw corrupt(); // every tag takes its length at least
+        tags = new String[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            tags[i] = readString(tagSection);
+        }
+        if (!Arrays.equals(tags, 0, ColumnarCorpus.UD_TAGS.length, ColumnarCorpus.UD_TAGS, 0, ColumnarCorpus.UD_TAGS.length)) {
+            throw corrupt();
+        }
+        ByteBuffer meta = sections[META];
+        String url = readString(meta), loadDate = readString(meta);
+        int n = meta.getInt();
+        if (n < 0 || n > meta.remaining() / Integer.BYTES) throw corrupt();
+        List<String> schemes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            schemes.add(readString(meta));
+        }
+        metadata = new Metadata(url, loadDate, schemes);
+        checkColumns();
+    }
+
+    // everything the columns point at is checked once here, so that reads from the mapping can trust them
+    private void checkColumns() throws IOException {
+        if (termStarts.get(0) != 0) throw corrupt();
+        for (int id = 0; id < termCount; id++) {
+            if (termStarts.get(id) > termStarts.get(id + 1)) throw corrupt();
+        }
+        if (sentenceStarts.get(0) != 0) throw corrupt();
+        for (int s = 0; s < sentenceCount; s++) {
+            if (sentenceStarts.get(s) > sentenceStarts.get(s + 1)) throw corrupt();
+        }
+        for (int t = 0; t < tokenCount; t++) {
+            int form = formIds.get(t), lemma = lemmaIds.get(t);
+            if (form < 0 || form >= termCount || lemma < 0 || lemma >= termCount
+                    || (posCodes.get(t) & 0xFF) >= tags.length) throw corrupt();
+        }
+    }
+
+    private IntBuffer ints(ByteBuffer section, long count) throws IOException {
+        if (section.capacity() < count * Integer.BYTES) throw corrupt();
+        return section.asIntBuffer();
+    }
+
+    private IOException corrupt() {
+        return new IOException("Corrupt corpus file: " + path);
+    }
+
+    /**
+     * Whether a path names a corpus file, by its suffix.
+     */
+    public static boolean isCorpusFile(String path) {
+        return path.toLowerCase(Locale.ROOT).endsWith(SUFFIX);
+    }
+
+    /**
+     * Maps a corpus file. The file is not held open; the mapping stays valid until the CorpusFile is unreachable.
+     */
+    public static CorpusFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CorpusFile(file, channel);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | java.nio.BufferUnderflowException e) {
+            throw new IOException("Corrupt corpus file: " + file, e);
+        }
+    }
+
+    //<editor-fold desc="Reading">
+    public Metadata getMetadata() { return metadata; }
+    public int sentenceCount() { return sentenceCount; }
+    public int tokenCount() { return tokenCount; }
+    public int vocabularySize() { return termCount; }
+
+    public int sentenceStart(int s) { return sentenceStarts.get(s); }
+    public int sentenceEnd(int s) { return sentenceStarts.get(s + 1); }
+
+    int formId(int token) { return formIds.get(token); }
+    int lemmaId(int token) { return lemmaIds.get(token); }
+    int posCode(int token) { return posCodes.get(token) & 0xFF; }
+    int tagsetSize() { return tags.length; }
+    String tag(int code) { return tags[code]; }
+
+    public String form(int token) { return term(formIds.get(token)); }
+    public String lemma(int token) { return term(lemmaIds.get(token)); }
+    public String pos(int token) { return tags[posCodes.get(token) & 0xFF]; }
+
+    public AnnotatedToken token(int token) {
+        return new AnnotatedToken(form(token), pos(token), lemma(token));
+    }
+
+    /**
+     * The tokens of sentence s, read from the mapping as they are accessed.
+     */
+    public List<AnnotatedToken> sentence(int s) {
+        return new NLPProcessing.TokenRange<>(sentenceStart(s), sentenceEnd(s), this::token);
+    }
+
+    public String term(int id) {
+        String[] cache = terms;
+        if (cache == null) {
+            terms = cache = new String[termCount]; // racing readers at worst decode a term twice
+        }
+        String term = cache[id];
+        if (term == null) {
+            cache[id] = term = decodeTerm(id);
+        }
+        return term;
+    }
+
+    private String decodeTerm(int id) {
+        int start = termStarts.get(id);
+        byte[] bytes = new byte[termStarts.get(id + 1) - start];
+        termBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The original text, decoded from the mapping on every call.
+     */
+    public String getText() {
+        return StandardCharsets.UTF_8.decode(text.duplicate()).toString();
+    }
+
+    /**
+     * A finished processor with the saved annotations, reading them from this mapping. Nothing is copied: sentences
+     * are decoded as they are accessed, the text whenever it is asked for, and the index is built on the first lookup.
+     */
+    public NLPProcessing asNLPProcessing() {
+        return NLPProcessing.fromFile(this);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Writing">
+    /**
+     * Saves a finished processor. Written next to {@code file} and moved over it once complete.
+     *
+     * @throws IllegalArgumentException if the corpus is still being annotated
+     */
+    public static void write(Path file, NLPProcessing processed, Metadata metadata) throws IOException {
+        if (!processed.isComplete()) {
+            throw new IllegalArgumentException("The corpus is still being annotated");
+        }
+        Path target = file.toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), ".corpus", ".part");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeTo(channel, processed, metadata);
+                channel.force(false);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeTo(FileChannel channel, NLPProcessing processed, Metadata metadata) throws IOException {
+        ColumnarCorpus corpus = processed.getColumnarCorpus();
+        int sentences = corpus.sentenceCount(), tokens = corpus.tokenCount();
+        int termCount = corpus.vocabularySize(), tagCount = corpus.tagsetSize();
+        long[] offsets = new long[SECTIONS + 1];
+        Output out = new Output(channel, HEADER_SIZE);
+
+        offsets[SENTENCES] = out.align();
+        for (int s = 0; s < sentences; s++) out.putInt(corpus.sentenceStart(s));
+        out.putInt(tokens);
+        offsets[FORMS] = out.align();
+        for (int t = 0; t < tokens; t++) out.putInt(corpus.formId(t));
+        offsets[LEMMAS] = out.align();
+        for (int t = 0; t < tokens; t++) out.putInt(corpus.lemmaId(t));
+        offsets[POS] = out.align();
+        for (int t = 0; t < tokens; t++) out.put((byte) corpus.posCode(t));
+
+        byte[][] encoded = new byte[termCount][];
+        offsets[TERMS] = out.align();
+        int start = 0;
+        for (int id = 0; id < termCount; id++) {
+            encoded[id] = corpus.term(id).getBytes(StandardCharsets.UTF_8);
+            out.putInt(start);
+            start += encoded[id].length;
+        }
+        out.putInt(start);
+        offsets[TERM_BYTES] = out.align();
+        for (byte[] term : encoded) out.put(term);
+
+        offsets[TAGS] = out.align();
+        for (int code = 0; code < tagCount; code++) out.putString(corpus.tag(code));
+        offsets[META] = out.align();
+        out.putString(metadata.url());
+        out.putString(metadata.loadDate());
+        out.putInt(metadata.filterSchemes().size());
+        for (String scheme : metadata.filterSchemes()) out.putString(scheme);
+        offsets[TEXT] = out.align();
+        out.put(processed.getText() != null ? processed.getText().getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        offsets[SECTIONS] = out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION)
+                .putInt(sentences).putInt(tokens).putInt(termCount).putInt(tagCount);
+        for (long offset : offsets) header.putLong(offset);
+        header.flip();
+        while (header.hasRemaining()) channel.write(header, header.position());
+    }
+
+    // sequential writes through one buffer, positions tracked for the header
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ORDER);
+        private long position;
+
+        Output(FileChannel channel, long start) {
+            this.channel = channel;
+            this.position = start;
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(v);
+        }
+
+        void put(byte b) throws IOException {
+            ensure(1);
+            buffer.put(b);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int off = 0; off < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - off);
+                buffer.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        void putString(String s) throws IOException {
+            if (s == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            put(bytes);
+        }
+
+        // pads to the next multiple of 8 and returns the position there
+        long align() throws IOException {
+            while (((position + buffer.position()) & 7) != 0) put((byte) 0);
+            return position + buffer.position();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        long flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            return position;
+        }
+    }
+    //</editor-fold>
+
+    // the length is checked against what is left before anything is allocated for it
+    private String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) return null;
+        if (length > in.remaining()) throw corrupt();
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+package com.lexparser.scraper.nlp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Posting lists over a finished {@link ColumnarCorpus}: for every form id, lemma id and POS code,
+ * the ascending global positions of the tokens carrying it.
+ * A position p decodes to (sentence, offset) as (corpus.sentenceOf(p), p - corpus.sentenceStart(sentence)).
+ *
+ * Next to the exact postings there are case-folded ones: every dictionary term gets the id of its
+ * {@link CaseFolding#fold folded} key, and forms/lemmas are posted under that key as well,
+ * so a case-insensitive lookup is one hash lookup instead of a per-token equalsIgnoreCase.
+ *
+ * Stored CSR-style, one flat int[] per field plus an offsets array.
+ */
+public final class InvertedIndex {
+
+    private final Csr forms, lemmas, pos;
+    private final Csr foldedForms, foldedLemmas;
+    private final int[] foldOfTerm;               // term id -> folded key id
+    private final Map<String, Integer> foldIds;   // folded key -> folded key id
+    private final PrefixIndex formPrefixes, lemmaPrefixes, posPrefixes;
+
+    // one field: postings of key k are postings[starts[k] .. starts[k + 1])
+    private record Csr(int[] starts, int[] postings) {
+        int[] get(int key) {
+            if (key < 0 || key + 1 >= starts.length) {
+                return new int[0];
+            }
+            return Arrays.copyOfRange(postings, starts[key], starts[key + 1]);
+        }
+
+        int count(int key) {
+            if (key < 0 || key + 1 >= starts.length) {
+                return 0;
+            }
+            return starts[key + 1] - starts[key];
+        }
+    }
+
+    private InvertedIndex(Csr forms, Csr lemmas, Csr pos, Csr foldedForms, Csr foldedLemmas,
+                          int[] foldOfTerm, Map<String, Integer> foldIds,
+                          PrefixIndex formPrefixes, PrefixIndex lemmaPrefixes, PrefixIndex posPrefixes) {
+        this.forms = forms;
+        this.lemmas = lemmas;
+        this.pos = pos;
+        this.foldedForms = foldedForms;
+        this.foldedLemmas = foldedLemmas;
+        this.foldOfTerm = foldOfTerm;
+        this.foldIds = foldIds;
+        this.formPrefixes = formPrefixes;
+        this.lemmaPrefixes = lemmaPrefixes;
+        this.posPrefixes = posPrefixes;
+    }
+
+    static InvertedIndex build(ColumnarCorpus corpus) {
+        int tokens = corpus.tokenCount();
+        int vocab = corpus.vocabularySize();
+
+        // fold every dictionary entry once; "The", "THE" and "the" share a key
+        int[] foldOfTerm = new int[vocab];
+        Map<String, Integer> foldIds = new HashMap<>();
+        for (int id = 0; id < vocab; id++) {
+            String key = CaseFolding.fold(corpus.term(id));
+            Integer fid = foldIds.get(key);
+            if (fid == null) {
+                fid = foldIds.size();
+                foldIds.put(key, fid);
+            }
+            foldOfTerm[id] = fid;
+        }
+
+        Csr forms = csr(tokens, vocab, corpus::formId);
+        Csr lemmas = csr(tokens, vocab, corpus::lemmaId);
+        Csr pos = csr(tokens, corpus.tagsetSize(), corpus::posCode);
+
+        // completion vocabularies, ranked by the posting counts just computed
+        String[] terms = new String[vocab];
+        int[] formCounts = new int[vocab];
+        int[] lemmaCounts = new int[vocab];
+        for (int id = 0; id < vocab; id++) {
+            terms[id] = corpus.term(id);
+            formCounts[id] = forms.count(id);
+            lemmaCounts[id] = lemmas.count(id);
+        }
+        String[] tags = new String[corpus.tagsetSize()];
+        int[] tagCounts = new int[tags.length];
+        for (int code = 0; code < tags.length; code++) {
+            tags[code] = corpus.tag(code);
+            tagCounts[code] = pos.count(code);
+        }
+
+        return new InvertedIndex(forms, lemmas, pos,
+                csr(tokens, foldIds.size(), t -> foldOfTerm[corpus.formId(t)]),
+                csr(tokens, foldIds.size(), t -> foldOfTerm[corpus.lemmaId(t)]),
+                foldOfTerm, foldIds,
+                new PrefixIndex(terms, formCounts),
+                new PrefixIndex(terms, lemmaCounts),
+                new PrefixIndex(tags, tagCounts));
+    }
+
+    private static Csr csr(int tokens, int keys, IntUnaryOperator keyOf) {
+        int[] starts = new int[keys + 1];
+        // counting pass, shifted by one so the prefix sum lands on the start offsets
+        for (int t = 0; t < tokens; t++) {
+            starts[keyOf.applyAsInt(t) + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] postings = new int[tokens];
+        int[] fill = Arrays.copyOf(starts, keys);
+        // positions are visited in order, so every list comes out sorted
+        for (int t = 0; t < tokens; t++) {
+            postings[fill[keyOf.applyAsInt(t)]++] = t;
+        }
+        return new Csr(starts, postings);
+    }
+
+    public int[] formPostings(int termId) { return forms.get(termId); }
+    public int[] lemmaPostings(int termId) { return lemmas.get(termId); }
+    public int[] posPostings(int tagCode) { return pos.get(tagCode); }
+
+    public int formFrequency(int termId) { return forms.count(termId); }
+    public int lemmaFrequency(int termId) { return lemmas.count(termId); }
+    public int posFrequency(int tagCode) { return pos.count(tagCode); }
+
+    //<editor-fold desc="Case-folded">
+    // folded key id of an arbitrary string, -1 if no form or lemma folds to it
+    public int foldId(String s) {
+        return foldIds.getOrDefault(CaseFolding.fold(s), -1);
+    }
+
+    public int foldOf(int termId) { return foldOfTerm[termId]; }
+
+    public int[] foldedFormPostings(int foldId) { return foldedForms.get(foldId); }
+    public int[] foldedLemmaPostings(int foldId) { return foldedLemmas.get(foldId); }
+    public int foldedFormFrequency(int foldId) { return foldedForms.count(foldId); }
+    public int foldedLemmaFrequency(int foldId) { return foldedLemmas.count(foldId); }
+    //</editor-fold>
+
+    public PrefixIndex formPrefixes() { return formPrefixes; }
+    public PrefixIndex lemmaPrefixes() { return lemmaPrefixes; }
+    public PrefixIndex posPrefixes() { return posPrefixes; }
+}
@@ -8,21 +8,43 @@ import sh.tze.gw_swing.UI.Backend.DataRepresentation.Word;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.IntFunction;
 
 public class NLPProcessing {
 
     private final String text;
+    private final ProcessingMode mode;
     private String[] sentences;
-    private final List<List<String>> tokens = new ArrayList<>();
-    private final List<List<String>> posTags = new ArrayList<>();
-    private final List<List<String>> lemmas = new ArrayList<>();
-    private final List<List<AnnotatedToken>> wordSentences = new ArrayList<>();
+    // the only copy of the annotations. the four lists below are read-only views on it,
+    // their size is the annotated sentence prefix while streaming
+    private final ColumnarCorpus corpus = new ColumnarCorpus();
+    private final List<List<String>> tokens = new SentenceView<>(corpus::form);
+    private final List<List<String>> posTags = new SentenceView<>(corpus::pos);
+    private final List<List<String>> lemmas = new SentenceView<>(corpus::lemma);
+    private final List<List<AnnotatedToken>> wordSentences = new SentenceView<>(corpus::token);
 
-    // Cache models for better performance
-    private static SentenceModel sentenceModel;
-    private static TokenizerModel tokenizerModel;
-    private static POSModel posModel;
-    private static LemmatizerModel lemmaModel;
+    // postings over the finished corpus, null while annotation is still running
+    private volatile InvertedIndex index;
+    // a corpus opened from a file reads everything from it; text and sentences stay null, the index is built on demand
+    private CorpusFile source;
+
+    // per-sentence results waiting for their turn to be appended to the column store (shards finish out of order)
+    private Annotation[] pending;
+    private SubmissionPublisher<SentenceBatch> publisher; // streaming mode only
+    private boolean started;
+    private final CompletableFuture<NLPProcessing> completion = new CompletableFuture<>();
+
+    // Cache models for better performance. written once by the loader thread, see preloadModels()
+    private static volatile SentenceModel sentenceModel;
+    private static volatile TokenizerModel tokenizerModel;
+    private static volatile POSModel posModel;
+    private static volatile LemmatizerModel lemmaModel;
 
     enum _path_type{
         legacy,
@@ -43,47 +65,424 @@ public class NLPProcessing {
             "en-pos-maxent.bin",
             "en-sent.bin"
     );
+    public enum ProcessingMode {
+        sequential,
+        parallel // sentence-sharded on ANNOTATION_POOL
+    }
+
+    // sentences per leaf task. small enough to balance a short article over all cores,
+    // large enough that the per-task overhead vanishes next to the tagger
+    private static final int SHARD_SIZE = 16;
+    private static final ForkJoinPool ANNOTATION_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // the *ME classes are not thread-safe, the models are. one annotator set per worker thread
+    private static final ThreadLocal<TokenizerME> localTokenizer = ThreadLocal.withInitial(() -> new TokenizerME(tokenizerModel));
+    private static final ThreadLocal<POSTaggerME> localTagger = ThreadLocal.withInitial(() -> new POSTaggerME(posModel));
+    private static final ThreadLocal<LemmatizerME> localLemmatizer = ThreadLocal.withInitial(() -> new LemmatizerME(lemmaModel));
+
     public NLPProcessing(String text) throws IOException {
+        this(text, ProcessingMode.sequential);
+    }
+
+    public NLPProcessing(String text, ProcessingMode mode) throws IOException {
         this.text = text;
+        this.mode = mode;
         loadModels();
         process();
+        completion.complete(this); // no-op unless there was nothing to annotate
     }
 
 
 
-    // Load all models first
+    // Load all models first. Blocks until the shared background load (see preloadModels) is done
     private void loadModels() throws IOException {
-        ModelPaths mp = mp_maven;
-        if (sentenceModel == null) {
-            try (InputStream modelIn = mp.type == _path_type.maven? this.getClass().getResourceAsStream(mp.sd) : new FileInputStream(mp.sd)) {
-                sentenceModel = new SentenceModel(modelIn);
-            }
+        try {
+            preloadModels().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for NLP models");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Failed to load NLP models", e.getCause());
         }
-        if (tokenizerModel == null) {
-            try (InputStream modelIn = mp.type == _path_type.maven? this.getClass().getResourceAsStream(mp.tk) : new FileInputStream(mp.tk)) {
-                tokenizerModel = new TokenizerModel(modelIn);
-            }
+    }
+
+    //<editor-fold desc="Model loading & warm-up">
+    public interface ModelLoadListener {
+        // done out of total steps: the four models, then the warm-up pass
+        void onProgress(String stage, int done, int total);
+    }
+
+    private static final int LOAD_STEPS = 5;
+    private static final List<ModelLoadListener> loadListeners = new ArrayList<>();
+    private static String lastStage = "Waiting for NLP models";
+    private static int lastDone = 0;
+    private static CompletableFuture<Void> modelsReady;
+
+    private static final String WARM_UP_TEXT =
+            "The quick brown foxes were jumping over the lazy dogs. " +
+            "She has been reading several books about ancient cities! " +
+            "Why did the researchers publish their findings so late? " +
+            "Running, swimming and cycling are popular sports in many countries.";
+    private static final int WARM_UP_ROUNDS = 8;
+
+    /**
+     * Loads the four models on a daemon thread, once. The returned future completes as soon as the models are usable;
+     * a synthetic annotation pass on the annotation pool follows afterwards to get the hot paths compiled.
+     * Safe to call from anywhere, any number of times. A failed load is retried on the next call.
+     */
+    public static synchronized CompletableFuture<Void> preloadModels() {
+        if (modelsReady != null && !modelsReady.isCompletedExceptionally()) {
+            return modelsReady;
         }
-        if (posModel == null) {
-            try (InputStream modelIn = mp.type == _path_type.maven? this.getClass().getResourceAsStream(mp.pos) : new FileInputStream(mp.pos)) {
-                posModel = new POSModel(modelIn);
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        modelsReady = ready;
+        Thread loader = new Thread(() -> {
+            try {
+                loadModelFiles();
+                ready.complete(null);
+            } catch (Throwable e) {
+                reportProgress("Failed to load NLP models: " + e.getMessage(), 0);
+                ready.completeExceptionally(e);
+                return;
             }
+            warmUp();
+        }, "nlp-model-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return ready;
+    }
+
+    private static void loadModelFiles() throws IOException {
+        ModelPaths mp = mp_maven;
+        reportProgress("Loading sentence model", 0);
+        try (InputStream modelIn = openModel(mp, mp.sd)) {
+            sentenceModel = new SentenceModel(modelIn);
+        }
+        reportProgress("Loading tokenizer model", 1);
+        try (InputStream modelIn = openModel(mp, mp.tk)) {
+            tokenizerModel = new TokenizerModel(modelIn);
+        }
+        reportProgress("Loading POS model", 2);
+        try (InputStream modelIn = openModel(mp, mp.pos)) {
+            posModel = new POSModel(modelIn);
         }
-        if (lemmaModel == null) {
-            try (InputStream modelIn = mp.type == _path_type.maven? this.getClass().getResourceAsStream(mp.lm) : new FileInputStream(mp.lm)) {
-                lemmaModel = new LemmatizerModel(modelIn);
+        reportProgress("Loading lemmatizer model", 3);
+        try (InputStream modelIn = openModel(mp, mp.lm)) {
+            lemmaModel = new LemmatizerModel(modelIn);
+        }
+    }
+
+    private static InputStream openModel(ModelPaths mp, String path) throws IOException {
+        InputStream in = mp.type == _path_type.maven ? NLPProcessing.class.getResourceAsStream(path) : new FileInputStream(path);
+        if (in == null) {
+            throw new FileNotFoundException("Model not found on classpath: " + path);
+        }
+        return in;
+    }
+
+    // run a few rounds through the parallel path so every pool worker builds its annotators
+    // and the tagger/lemmatizer loops get JIT-compiled before the first real document
+    private static void warmUp() {
+        reportProgress("Warming up NLP pipeline", 4);
+        try {
+            String text = String.join(" ", Collections.nCopies(SHARD_SIZE * ANNOTATION_POOL.getParallelism() / 4 + 1, WARM_UP_TEXT));
+            for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                new NLPProcessing(text, ProcessingMode.parallel);
             }
+        } catch (IOException | RuntimeException e) {
+            // warm-up is best effort, the models themselves are fine
         }
+        reportProgress("NLP models ready", LOAD_STEPS);
     }
 
+    /**
+     * Registers a progress listener. It is called right away with the latest state, so late listeners
+     * (e.g. the UI, which is built after loading started) still see where loading is.
+     * Callbacks come from the loader thread.
+     */
+    public static void addModelLoadListener(ModelLoadListener listener) {
+        String stage;
+        int done;
+        synchronized (loadListeners) {
+            loadListeners.add(listener);
+            stage = lastStage;
+            done = lastDone;
+        }
+        listener.onProgress(stage, done, LOAD_STEPS);
+    }
+
+    public static void removeModelLoadListener(ModelLoadListener listener) {
+        synchronized (loadListeners) {
+            loadListeners.remove(listener);
+        }
+    }
+
+    private static void reportProgress(String stage, int done) {
+        List<ModelLoadListener> snapshot;
+        synchronized (loadListeners) {
+            lastStage = stage;
+            lastDone = done;
+            snapshot = new ArrayList<>(loadListeners);
+        }
+        for (ModelLoadListener l : snapshot) {
+            l.onProgress(stage, done, LOAD_STEPS);
+        }
+    }
+    //</editor-fold>
+
     // Main processing pipeline
     private void process() {
         detectSentences();
+        pending = new Annotation[sentences.length];
+        if (mode == ProcessingMode.parallel) {
+            ANNOTATION_POOL.invoke(new AnnotateShard(0, sentences.length));
+            return;
+        }
         tokenizeSentences();
         tagPOS();
         lemmatize();
+        onSentencesAnnotated();
+    }
+
+    // final fields, so a finished Annotation is safely visible to whichever thread appends it
+    private record Annotation(String[] tokens, String[] posTags, String[] lemmas) {}
+
+    // Sentence detection stays single-threaded (it is cheap and needs the whole text),
+    // everything after it is independent per sentence, so shard the sentence array.
+    // Each shard fills its own pending slots; onSentencesAnnotated moves them into the column store in order,
+    // which keeps the original sentence order without any merge step.
+    private void annotateSentence(int i) {
+        String[] tokenArray = localTokenizer.get().tokenize(sentences[i]);
+        String[] posArray = localTagger.get().tag(tokenArray);
+        String[] lemmaArray = localLemmatizer.get().lemmatize(tokenArray, posArray);
+        pending[i] = new Annotation(tokenArray, posArray, lemmaArray);
+    }
+
+    // Shards finish out of order. Only the contiguous prefix of finished sentences is made visible
+    // (getters and publisher alike), so readers never see a hole.
+    private synchronized void onSentencesAnnotated() {
+        int from = corpus.sentenceCount();
+        int to = from;
+        while (to < pending.length && pending[to] != null) {
+            Annotation a = pending[to];
+            corpus.appendSentence(a.tokens(), a.posTags(), a.lemmas());
+            pending[to] = null;
+            to++;
+        }
+        if (to == from) {
+            return;
+        }
+        if (publisher != null) {
+            publisher.submit(new SentenceBatch(from, wordSentences.subList(from, to), to == pending.length));
+        }
+        if (to == pending.length) {
+            finish(null);
+        }
+    }
+
+    private void finish(Throwable failure) {
+        if (failure == null) {
+            corpus.trim();
+            index = InvertedIndex.build(corpus);
+        }
+        if (publisher != null) {
+            if (failure == null) publisher.close();
+            else publisher.closeExceptionally(failure);
+        }
+        if (failure == null) completion.complete(this);
+        else completion.completeExceptionally(failure);
+    }
+
+    private class AnnotateShard extends RecursiveAction {
+        private final int from, to;
+
+        AnnotateShard(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SHARD_SIZE) {
+                for (int i = from; i < to; i++) {
+                    annotateSentence(i);
+                }
+                onSentencesAnnotated();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new AnnotateShard(from, mid), new AnnotateShard(mid, to));
+        }
+    }
+
+    /**
+     * Rebuilds a finished processor from annotations produced earlier (cache, saved files).
+     * No model is loaded or run.
+     *
+     * @param text the original text, may be empty if unknown
+     * @param sentences the detected sentence strings, may be null if unknown
+     * @param annotatedSentences one token list per sentence
+     */
+    public static NLPProcessing fromAnnotations(String text, String[] sentences, List<List<AnnotatedToken>> annotatedSentences) {
+        NLPProcessing p = new NLPProcessing(text, ProcessingMode.sequential, null);
+        p.sentences = sentences != null ? sentences : new String[annotatedSentences.size()];
+        for (List<AnnotatedToken> sentence : annotatedSentences) {
+            String[] tk = new String[sentence.size()];
+            String[] ps = new String[sentence.size()];
+            String[] lm = new String[sentence.size()];
+            for (int j = 0; j < tk.length; j++) {
+                AnnotatedToken t = sentence.get(j);
+                tk[j] = t.getForm();
+                ps[j] = t.getPos();
+                lm[j] = t.getLemma();
+            }
+            p.corpus.appendSentence(tk, ps, lm);
+        }
+        p.corpus.trim();
+        p.index = InvertedIndex.build(p.corpus);
+        p.started = true;
+        p.completion.complete(p);
+        return p;
+    }
+
+    // a finished processor reading a corpus file as it is accessed; the sentence strings are not saved
+    static NLPProcessing fromFile(CorpusFile file) {
+        NLPProcessing p = new NLPProcessing(null, ProcessingMode.sequential, null);
+        p.source = file;
+        p.corpus.map(file);
+        p.started = true;
+        p.completion.complete(p);
+        return p;
+    }
+
+    // finishes a processor whose columns were filled in one go
+    private NLPProcessing loaded() {
+        sentences = new String[corpus.sentenceCount()];
+        index = InvertedIndex.build(corpus);
+        started = true;
+        completion.complete(this);
+        return this;
+    }
+
+    /**
+     * Rebuilds a finished processor one sentence at a time, for annotations that are read as a stream
+     * (e.g. an XML export). Nothing but the columns is held meanwhile. No model is loaded or run.
+     * The text is made up from the forms, separated by spaces, one sentence per line.
+     */
+    public static final class Builder {
+        private final ColumnarCorpus columns = new ColumnarCorpus();
+        private final StringBuilder text = new StringBuilder();
+
+        public void add(List<AnnotatedToken> sentence) {
+            String[] tk = new String[sentence.size()];
+            String[] ps = new String[sentence.size()];
+            String[] lm = new String[sentence.size()];
+            for (int j = 0; j < tk.length; j++) {
+                AnnotatedToken t = sentence.get(j);
+                tk[j] = t.getForm();
+                ps[j] = t.getPos();
+                lm[j] = t.getLemma();
+            }
+            columns.appendSentence(tk, ps, lm);
+            if (!text.isEmpty()) text.append('\n');
+            text.append(String.join(" ", tk));
+        }
+
+        public int sentenceCount() { return columns.sentenceCount(); }
+
+        // whether added sentence s has exactly these forms, tags and lemmas
+        public boolean sameSentence(int s, List<AnnotatedToken> sentence) {
+            int start = columns.sentenceStart(s);
+            if (columns.sentenceEnd(s) - start != sentence.size()) return false;
+            for (int j = 0; j < sentence.size(); j++) {
+                AnnotatedToken t = sentence.get(j);
+                if (!columns.form(start + j).equals(t.getForm()) || !columns.pos(start + j).equals(t.getPos())
+                        || !columns.lemma(start + j).equals(t.getLemma())) return false;
+            }
+            return true;
+        }
+
+        public NLPProcessing build() {
+            columns.trim();
+            NLPProcessing p = new NLPProcessing(text.toString(), ProcessingMode.sequential, null);
+            p.corpus.load(columns);
+            return p.loaded();
+        }
+    }
+
+    // what the annotations depend on besides the text. part of the annotation cache key
+    static String modelIdentity() {
+        return mp_maven.toString();
+    }
+
+    //<editor-fold desc="Streaming">
+    /**
+     * A run of consecutive, fully annotated sentences starting at sentence index {@code from}.
+     * Batches are published in document order and never overlap.
+     */
+    public record SentenceBatch(int from, List<List<AnnotatedToken>> sentences, boolean last) {}
+
+    /**
+     * Creates a processor that has only detected sentences. Nothing is tagged until {@link #start()},
+     * so subscribe to {@link #publisher()} first to receive every batch.
+     */
+    public static NLPProcessing streaming(String text, ProcessingMode mode) throws IOException {
+        NLPProcessing p = new NLPProcessing(text, mode, null);
+        p.loadModels();
+        p.detectSentences();
+        p.pending = new Annotation[p.sentences.length];
+        p.publisher = new SubmissionPublisher<>();
+        return p;
+    }
+
+    // deferred: no models touched, no annotation. the Void only disambiguates from the public constructor
+    private NLPProcessing(String text, ProcessingMode mode, Void deferred) {
+        this.text = text;
+        this.mode = mode;
+    }
+
+    public Flow.Publisher<SentenceBatch> publisher() {
+        return publisher;
     }
 
+    /**
+     * Kicks off annotation on the annotation pool and returns immediately.
+     * Sequential mode still runs off the calling thread, just as a single shard.
+     */
+    public synchronized CompletableFuture<NLPProcessing> start() {
+        if (started) {
+            return completion;
+        }
+        started = true;
+        if (sentences.length == 0) {
+            finish(null);
+            return completion;
+        }
+        ANNOTATION_POOL.execute(() -> {
+            try {
+                if (mode == ProcessingMode.parallel) {
+                    new AnnotateShard(0, sentences.length).invoke();
+                } else {
+                    // sequential: still publish every SHARD_SIZE sentences so the first ones show up early
+                    for (int i = 0; i < sentences.length; i++) {
+                        annotateSentence(i);
+                        if ((i + 1) % SHARD_SIZE == 0) onSentencesAnnotated();
+                    }
+                    onSentencesAnnotated();
+                }
+            } catch (RuntimeException e) {
+                finish(e);
+            }
+        });
+        return completion;
+    }
+
+    public CompletableFuture<NLPProcessing> getCompletion() { return completion; }
+    public boolean isComplete() { return source != null || corpus.sentenceCount() == sentences.length; }
+    public int getAnnotatedCount() { return corpus.sentenceCount(); }
+    //</editor-fold>
+
     // Uses OpenNLP sentence model to split the input text into sentences
     private void detectSentences() {
         SentenceDetectorME detector = new SentenceDetectorME(sentenceModel);
@@ -91,98 +490,242 @@ public class NLPProcessing {
     }
 
     // Tokenizes each sentence into individual words using OpenNLP tokenizer model
+    // (sequential path: the three passes only hold plain arrays until the column store takes them over)
+    private String[][] tokenArrays;
+    private String[][] posArrays;
+
     private void tokenizeSentences() {
         TokenizerME tokenizer = new TokenizerME(tokenizerModel);
-        for (String sentence : sentences) {
-            String[] tokenArray = tokenizer.tokenize(sentence);
-            tokens.add(Arrays.asList(tokenArray));
+        tokenArrays = new String[sentences.length][];
+        for (int i = 0; i < sentences.length; i++) {
+            tokenArrays[i] = tokenizer.tokenize(sentences[i]);
         }
     }
 
     // Tags each token with its corresponding POS tag using OpenNLP POS tagger
     private void tagPOS() {
         POSTaggerME tagger = new POSTaggerME(posModel);
-        for (List<String> tokenList : tokens) {
-            String[] tokenArray = tokenList.toArray(new String[0]);
-            String[] posArray = tagger.tag(tokenArray);
-            posTags.add(Arrays.asList(posArray));
+        posArrays = new String[sentences.length][];
+        for (int i = 0; i < tokenArrays.length; i++) {
+            posArrays[i] = tagger.tag(tokenArrays[i]);
         }
     }
 
     // Lemmatizes each token using the corresponding POS tag
     private void lemmatize() {
         LemmatizerME lemmatizer = new LemmatizerME(lemmaModel);
-        for (int i = 0; i < tokens.size(); i++) {
-            List<String> tokenList = tokens.get(i);
-            List<String> posList = posTags.get(i);
-            String[] lemmaArray = lemmatizer.lemmatize(
-                    tokenList.toArray(new String[0]),
-                    posList.toArray(new String[0])
-            );
-            lemmas.add(Arrays.asList(lemmaArray));
-
-            // Construct full sentences with annotations
-            List<AnnotatedToken> sentence = new ArrayList<>();
-            for (int j = 0; j < tokenList.size(); j++) {
-                sentence.add(new AnnotatedToken(tokenList.get(j), posList.get(j), lemmaArray[j]));
-            }
-            wordSentences.add(sentence);
+        for (int i = 0; i < tokenArrays.length; i++) {
+            String[] lemmaArray = lemmatizer.lemmatize(tokenArrays[i], posArrays[i]);
+            pending[i] = new Annotation(tokenArrays[i], posArrays[i], lemmaArray);
         }
+        tokenArrays = null;
+        posArrays = null;
     }
 
     // why is this using AnnotatedToken, you could have chosen plain String
     public List<SearchResult> find(AnnotatedToken targetWord) {
-        List<SearchResult> matches = new ArrayList<>();
-        for (List<AnnotatedToken> sentence : wordSentences) {
-            for (int i = 0; i < sentence.size(); i++) {
-                if (sentence.get(i).equalsSelective(targetWord)) {
-                    matches.add(new SearchResult(i, sentence));
-                }
-            }
+        return inSentence(occurrences(targetWord, false));
+    }
+
+    public List<SearchResult> findCaseSensitive(AnnotatedToken targetWord) {
+        return inSentence(occurrences(targetWord, true));
+    }
+
+    /**
+     * A result per position, each with the whole sentence the token is in.
+     *
+     * @param positions global token positions, e.g. from {@link #occurrences}
+     */
+    public List<SearchResult> inSentence(int[] positions) {
+        List<SearchResult> matches = new ArrayList<>(positions.length);
+        for (int p : positions) {
+            int s = corpus.sentenceOf(p);
+            matches.add(new SearchResult(p - corpus.sentenceStart(s), wordSentences.get(s)));
         }
         return matches;
     }
 
-    public List<SearchResult> findCaseSensitive(AnnotatedToken targetWord) {
-        List<SearchResult> matches = new ArrayList<>();
-        for (List<AnnotatedToken> sentence : wordSentences) {
-            for (int i = 0; i < sentence.size(); i++) {
-                if (sentence.get(i).equalsSelectiveCaseSensitive(targetWord)) {
-                    matches.add(new SearchResult(i, sentence));
-                }
+    //<editor-fold desc="Index lookups">
+    /**
+     * Global positions of every token equal to {@code target} in form, POS and lemma,
+     * with the same comparison as {@link AnnotatedToken#equalsSelective} / {@link AnnotatedToken#equalsSelectiveCaseSensitive}.
+     * Uses the inverted index once annotation has finished, scans the annotated prefix before that.
+     */
+    public int[] occurrences(AnnotatedToken target, boolean caseSensitive) {
+        InvertedIndex idx = index();
+        if (idx == null) {
+            return scan(t -> caseSensitive ? t.equalsSelectiveCaseSensitive(target) : t.equalsSelective(target));
+        }
+        int form = termKey(idx, target.getForm(), caseSensitive);
+        int lemma = termKey(idx, target.getLemma(), caseSensitive);
+        int[] posCodes = tagCodes(target.getPos(), caseSensitive);
+        if (form < 0 || lemma < 0 || posCodes.length == 0) {
+            return new int[0];
+        }
+        int[] candidates = caseSensitive ? idx.formPostings(form) : idx.foldedFormPostings(form);
+        return retain(idx, caseSensitive, candidates, -1, lemma, posCodes);
+    }
+
+    /**
+     * Global positions, in document order, of every token that satisfies all non-blank keys.
+     * Form and lemma compare case-insensitively unless {@code caseSensitive}; POS always compares exactly.
+     * With the index the cost depends on the hits of the rarest key, not on the corpus size.
+     */
+    public int[] match(String wf, String pos, String lemma, boolean caseSensitive) {
+        boolean byForm = wf != null && !wf.isBlank();
+        boolean byLemma = lemma != null && !lemma.isBlank();
+        boolean byPos = pos != null && !pos.isBlank();
+        if (!byForm && !byLemma && !byPos) {
+            return new int[0];
+        }
+        InvertedIndex idx = index();
+        if (idx == null) {
+            return scan(t -> (!byForm || (caseSensitive ? wf.equals(t.getForm()) : CaseFolding.equals(wf, t.getForm())))
+                    && (!byLemma || (caseSensitive ? lemma.equals(t.getLemma()) : CaseFolding.equals(lemma, t.getLemma())))
+                    && (!byPos || pos.equals(t.getPos())));
+        }
+        int form = byForm ? termKey(idx, wf, caseSensitive) : -1;
+        int lem = byLemma ? termKey(idx, lemma, caseSensitive) : -1;
+        int posCode = byPos ? corpus.tagCodeOf(pos) : -1;
+        if ((byForm && form < 0) || (byLemma && lem < 0) || (byPos && posCode < 0)) {
+            return new int[0];
+        }
+        int[] posCodes = byPos ? new int[]{posCode} : null;
+
+        // drive with the rarest key, check the others per candidate
+        long formHits = byForm ? (caseSensitive ? idx.formFrequency(form) : idx.foldedFormFrequency(form)) : Long.MAX_VALUE;
+        long lemmaHits = byLemma ? (caseSensitive ? idx.lemmaFrequency(lem) : idx.foldedLemmaFrequency(lem)) : Long.MAX_VALUE;
+        long posHits = byPos ? idx.posFrequency(posCode) : Long.MAX_VALUE;
+        if (formHits <= lemmaHits && formHits <= posHits) {
+            int[] candidates = caseSensitive ? idx.formPostings(form) : idx.foldedFormPostings(form);
+            return retain(idx, caseSensitive, candidates, -1, lem, posCodes);
+        }
+        if (lemmaHits <= posHits) {
+            int[] candidates = caseSensitive ? idx.lemmaPostings(lem) : idx.foldedLemmaPostings(lem);
+            return retain(idx, caseSensitive, candidates, form, -1, posCodes);
+        }
+        return retain(idx, caseSensitive, idx.posPostings(posCode), form, lem, null);
+    }
+
+    public InvertedIndex getIndex() { return index(); }
+
+    // the index, built on the first lookup for a corpus opened from a file
+    private InvertedIndex index() {
+        InvertedIndex idx = index;
+        if (idx != null || source == null) return idx;
+        synchronized (this) {
+            if (index == null) index = InvertedIndex.build(corpus);
+            return index;
+        }
+    }
+
+    /**
+     * Up to {@code limit} distinct forms / POS tags / lemmas starting with {@code prefix}, most frequent first.
+     * Answered from the prefix indexes once annotation has finished; before that the annotated prefix is scanned
+     * and the first hits in document order are returned.
+     */
+    public List<String> completeForm(String prefix, int limit) {
+        InvertedIndex idx = index();
+        return idx != null ? idx.formPrefixes().complete(prefix, limit) : scanCompletions(corpus::form, prefix, limit);
+    }
+
+    public List<String> completePos(String prefix, int limit) {
+        InvertedIndex idx = index();
+        return idx != null ? idx.posPrefixes().complete(prefix, limit) : scanCompletions(corpus::pos, prefix, limit);
+    }
+
+    public List<String> completeLemma(String prefix, int limit) {
+        InvertedIndex idx = index();
+        return idx != null ? idx.lemmaPrefixes().complete(prefix, limit) : scanCompletions(corpus::lemma, prefix, limit);
+    }
+
+    private List<String> scanCompletions(IntFunction<String> column, String prefix, int limit) {
+        java.util.LinkedHashSet<String> found = new java.util.LinkedHashSet<>();
+        for (int t = 0, n = corpus.tokenCount(); t < n && found.size() < limit; t++) {
+            String s = column.apply(t);
+            if (s.startsWith(prefix)) found.add(s);
+        }
+        return new ArrayList<>(found);
+    }
+
+    private int[] scan(java.util.function.Predicate<AnnotatedToken> test) {
+        int n = corpus.tokenCount();
+        int[] out = new int[16];
+        int k = 0;
+        for (int t = 0; t < n; t++) {
+            if (test.test(corpus.token(t))) {
+                if (k == out.length) out = Arrays.copyOf(out, k * 2);
+                out[k++] = t;
             }
         }
-        return matches;
+        return Arrays.copyOf(out, k);
     }
 
-    public List<SearchResult> findMatchesWithNeighbors(AnnotatedToken targetWord, int leftNumber, int rightNumber) {
-        List<SearchResult> result = new ArrayList<>();
-        List<AnnotatedToken> allWords = new ArrayList<>();
-        for (List<AnnotatedToken> sentence : wordSentences) {
-            allWords.addAll(sentence);
-        }
-        for (int i = 0; i < allWords.size(); i++) {
-            if (allWords.get(i).equalsSelective(targetWord)) {
-                int start = Math.max(i - leftNumber, 0);
-                int end = Math.min(i + rightNumber + 1, allWords.size());
-                result.add(new SearchResult(leftNumber, allWords.subList(start, end)));
+    // keeps the candidates matching every given key (-1 / null = not checked);
+    // form and lemma keys are term ids, or folded key ids when !caseSensitive
+    private int[] retain(InvertedIndex idx, boolean caseSensitive, int[] candidates, int form, int lemma, int[] posCodes) {
+        int k = 0;
+        for (int p : candidates) {
+            if (form >= 0 && termKeyAt(idx, corpus.formId(p), caseSensitive) != form) continue;
+            if (lemma >= 0 && termKeyAt(idx, corpus.lemmaId(p), caseSensitive) != lemma) continue;
+            if (posCodes != null && Arrays.binarySearch(posCodes, corpus.posCode(p)) < 0) continue;
+            candidates[k++] = p;
+        }
+        return Arrays.copyOf(candidates, k);
+    }
+
+    // the id s is looked up under: its term id, or its folded key id when ignoring case; -1 if absent
+    private int termKey(InvertedIndex idx, String s, boolean caseSensitive) {
+        return caseSensitive ? corpus.termId(s) : idx.foldId(s);
+    }
+
+    private static int termKeyAt(InvertedIndex idx, int termId, boolean caseSensitive) {
+        return caseSensitive ? termId : idx.foldOf(termId);
+    }
+
+    private int[] tagCodes(String tag, boolean caseSensitive) {
+        if (caseSensitive) {
+            int code = corpus.tagCodeOf(tag);
+            return code < 0 ? new int[0] : new int[]{code};
+        }
+        int[] out = new int[0];
+        for (int code = 0, n = corpus.tagsetSize(); code < n; code++) {
+            if (CaseFolding.equals(corpus.tag(code), tag)) {
+                out = Arrays.copyOf(out, out.length + 1);
+                out[out.length - 1] = code;
             }
         }
-        return result;
+        return out;
+    }
+    //</editor-fold>
+
+    public List<SearchResult> findMatchesWithNeighbors(AnnotatedToken targetWord, int leftNumber, int rightNumber) {
+        return withNeighbors(occurrences(targetWord, false), leftNumber, rightNumber);
     }
 
     public List<SearchResult> showNeighborsCaseSensitive(AnnotatedToken targetWord, int leftNumber, int rightNumber) {
-        List<SearchResult> result = new ArrayList<>();
-        List<AnnotatedToken> allWords = new ArrayList<>();
-        for (List<AnnotatedToken> sentence : wordSentences) {
-            allWords.addAll(sentence);
-        }
-        for (int i = 0; i < allWords.size(); i++) {
-            if (allWords.get(i).equalsSelectiveCaseSensitive(targetWord)) {
-                int start = Math.max(i - leftNumber, 0);
-                int end = Math.min(i + rightNumber + 1, allWords.size());
-                result.add(new SearchResult(leftNumber, allWords.subList(start, end)));
-            }
+        return withNeighbors(occurrences(targetWord, true), leftNumber, rightNumber);
+    }
+
+    /**
+     * A result per position, each with the token and up to {@code leftNumber} / {@code rightNumber} tokens around it.
+     * Windows are offset ranges over the flat token columns, crossing sentence boundaries like before;
+     * nothing is copied, tokens are produced when the result is rendered.
+     */
+    public List<SearchResult> withNeighbors(int[] positions, int leftNumber, int rightNumber) {
+        return withNeighbors(positions, leftNumber, rightNumber, corpus.tokenCount());
+    }
+
+    /**
+     * Like {@link #withNeighbors(int[], int, int)}, but windows stop at {@code tokenCount}, e.g. the tokens that
+     * were annotated when a snapshot was taken.
+     */
+    public List<SearchResult> withNeighbors(int[] positions, int leftNumber, int rightNumber, int tokenCount) {
+        List<SearchResult> result = new ArrayList<>(positions.length);
+        for (int p : positions) {
+            int start = Math.max(p - leftNumber, 0);
+            int end = Math.min(p + rightNumber + 1, tokenCount);
+            result.add(new SearchResult(leftNumber, new TokenRange<>(start, end, corpus::token)));
         }
         return result;
     }
@@ -198,12 +741,66 @@ public class NLPProcessing {
     }
 
 
-    // Getters
-    public String[] getSentences() { return sentences; }
+    // Getters. While streaming these only expose the annotated prefix
+    public String getText() { return source != null ? source.getText() : text; } // decoded anew if opened from a file
+    public String[] getSentences() {
+        String[] s = sentences;
+        if (s == null && source != null) {
+            sentences = s = new String[corpus.sentenceCount()]; // all unknown; racing callers at worst make two
+        }
+        return s;
+    }
     public List<List<String>> getTokens() { return tokens; }
     public List<List<String>> getPosTags() { return posTags; }
     public List<List<String>> getLemmas() { return lemmas; }
     public List<List<AnnotatedToken>> getWordSentences() { return wordSentences; }
+    public ColumnarCorpus getColumnarCorpus() { return corpus; }
+
+    // List<List<T>> over the column store: one inner list per sentence, elements produced on access
+    private final class SentenceView<T> extends AbstractList<List<T>> implements RandomAccess {
+        private final IntFunction<T> column;
+
+        SentenceView(IntFunction<T> column) {
+            this.column = column;
+        }
+
+        @Override
+        public List<T> get(int s) {
+            Objects.checkIndex(s, corpus.sentenceCount());
+            return new TokenRange<>(corpus.sentenceStart(s), corpus.sentenceEnd(s), column);
+        }
+
+        @Override
+        public int size() {
+            return corpus.sentenceCount();
+        }
+    }
+
+    // a run of global token positions [from, to); stable identity for a sentence or neighbour window
+    public static final class TokenRange<T> extends AbstractList<T> implements RandomAccess {
+        private final int from, to;
+        private final IntFunction<T> column;
+
+        TokenRange(int from, int to, IntFunction<T> column) {
+            this.from = from;
+            this.to = to;
+            this.column = column;
+        }
+
+        public int from() { return from; }
+        public int to() { return to; }
+
+        @Override
+        public T get(int i) {
+            Objects.checkIndex(i, to - from);
+            return column.apply(from + i);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
 }
 
 
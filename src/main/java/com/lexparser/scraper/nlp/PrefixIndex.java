@@ -0,0 +1,82 @@
+package com.lexparser.scraper.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorted vocabulary of one field with the corpus frequency of every entry, for completion popups.
+ * All entries starting with a prefix form one contiguous run of the sorted array, found with two binary searches;
+ * only that run is looked at, and only the k most frequent of it are kept.
+ */
+public final class PrefixIndex {
+
+    private final String[] entries;     // sorted, distinct
+    private final int[] frequencies;    // parallel to entries
+
+    PrefixIndex(String[] terms, int[] frequencies) {
+        Integer[] order = new Integer[terms.length];
+        int n = 0;
+        for (int i = 0; i < terms.length; i++) {
+            if (frequencies[i] > 0) order[n++] = i; // term only occurs in the other field
+        }
+        order = Arrays.copyOf(order, n);
+        Arrays.sort(order, Comparator.comparing(i -> terms[i]));
+        this.entries = new String[n];
+        this.frequencies = new int[n];
+        for (int i = 0; i < n; i++) {
+            entries[i] = terms[order[i]];
+            this.frequencies[i] = frequencies[order[i]];
+        }
+    }
+
+    /**
+     * Up to {@code limit} entries starting with {@code prefix} (case-sensitive, like {@link String#startsWith}),
+     * most frequent first, ties alphabetically.
+     */
+    public List<String> complete(String prefix, int limit) {
+        int from = lowerBound(prefix);
+        int to = from;
+        // the run ends before the first entry that no longer starts with prefix;
+        // prefix + U+FFFF sorts after all of them (barring that char in the corpus, which startsWith re-checks)
+        if (from < entries.length && entries[from].startsWith(prefix)) {
+            to = lowerBound(prefix + Character.MAX_VALUE);
+            while (to < entries.length && entries[to].startsWith(prefix)) to++;
+        }
+        if (from == to || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // min-heap of the best `limit` so far, worst on top
+        Comparator<Integer> rank = Comparator.<Integer>comparingInt(i -> frequencies[i])
+                .thenComparing(i -> entries[i], Comparator.reverseOrder());
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, to - from) + 1, rank);
+        for (int i = from; i < to; i++) {
+            if (best.size() < limit) {
+                best.add(i);
+            } else if (rank.compare(i, best.peek()) > 0) {
+                best.poll();
+                best.add(i);
+            }
+        }
+        String[] out = new String[best.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = entries[best.poll()];
+        }
+        return new ArrayList<>(Arrays.asList(out));
+    }
+
+    public int size() { return entries.length; }
+
+    private int lowerBound(String key) {
+        int lo = 0, hi = entries.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries[mid].compareTo(key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
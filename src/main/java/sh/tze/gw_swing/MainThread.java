@@ -1,9 +1,13 @@
 package sh.tze.gw_swing;
 
+import com.lexparser.scraper.nlp.NLPProcessing;
+
 import javax.swing.*;
 
 public class MainThread {
     public static void main(String[] args) {
+        // start deserializing the models right away, off the EDT. The window comes up meanwhile
+        NLPProcessing.preloadModels();
         SwingUtilities.invokeLater(() -> {
             MainWindow.runUIThread();
         });
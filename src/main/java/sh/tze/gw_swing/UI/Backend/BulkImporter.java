@@ -0,0 +1,185 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.WikipediaScraper;
+import com.lexparser.scraper.nlp.AnnotationCache;
+import com.lexparser.scraper.nlp.NLPProcessing;
+import sh.tze.gw_swing.UI.Backend.File.MappedText;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Imports many documents at once: every file of a directory, every file matching a glob,
+ * or every line (url or absolute path) of a list file.
+ * At most {@value #CONCURRENCY_PROPERTY} (default 8) documents are in flight at a time; on runtimes with
+ * virtual threads each document gets one, otherwise a fixed pool of that size is used.
+ * Annotation of all of them shares NLPProcessing's pool, so it scales with the cores.
+ * Every finished document is handed to the EDT through {@code onImported} as soon as it is ready.
+ */
+final class BulkImporter {
+
+    static final String CONCURRENCY_PROPERTY = "gw.import.concurrency";
+    private static final int DEFAULT_CONCURRENCY = 8;
+
+    // progress of one import, reported on the EDT
+    interface Listener {
+        void onImported(String url, NLPProcessing processed);
+        void onFailed(String url, Exception cause);
+        void onProgress(int done, int failed, int total, boolean finished);
+    }
+
+    private final AnnotationCache cache;
+    private final Listener listener;
+    private volatile boolean cancelled;
+    private ExecutorService executor;
+
+    BulkImporter(AnnotationCache cache, Listener listener) {
+        this.cache = cache;
+        this.listener = listener;
+    }
+
+    //<editor-fold desc="Sources">
+    /**
+     * Expands an import spec: a directory, a glob such as /data/wiki/*.txt, or a text file listing one url/path per line
+     * (blank lines and lines starting with '#' are skipped). A spec that names an existing file or directory is taken
+     * literally even if it looks like a glob, e.g. /data/run [2020]/.
+     */
+    static List<String> expand(String spec) throws IOException {
+        if (spec.matches(".*[*?\\[{].*") && !exists(spec)) {
+            return expandGlob(spec);
+        }
+        Path path = Path.of(spec);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> s = Files.list(path)) {
+                return s.filter(Files::isRegularFile).sorted().map(Path::toString).toList();
+            }
+        }
+        List<String> out = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) out.add(line);
+        }
+        return out;
+    }
+
+    private static List<String> expandGlob(String glob) throws IOException {
+        // walk from the deepest directory without wildcards
+        String fixed = glob.substring(0, glob.replaceAll("[*?\\[{].*$", "").lastIndexOf('/') + 1);
+        Path root = Path.of(fixed.isEmpty() ? "." : fixed);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> s = Files.walk(root)) {
+            Stream<Path> files = s.filter(Files::isRegularFile);
+            if (fixed.isEmpty()) {
+                files = files.map(root::relativize); // ./a.txt would never match *.txt
+            }
+            return files.filter(matcher::matches).sorted().map(Path::toString).toList();
+        }
+    }
+
+    private static boolean exists(String spec) {
+        try {
+            return Files.exists(Path.of(spec));
+        } catch (InvalidPathException e) {
+            return false; // e.g. * on windows, a glob then
+        }
+    }
+    //</editor-fold>
+
+    /**
+     * Starts importing {@code sources} in the background and returns immediately. One import at a time per importer.
+     */
+    void start(List<String> sources) {
+        int permits = Math.max(1, Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY));
+        Semaphore slots = new Semaphore(permits); // the bound, whatever the executor
+        executor = newExecutor(permits);
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger(); // exactly one task sees the last count
+        int total = sources.size();
+        for (String source : sources) {
+            executor.execute(() -> {
+                if (cancelled) return;
+                try {
+                    NLPProcessing processed;
+                    slots.acquire(); // held through annotation too, so only `permits` texts are in memory at once
+                    try {
+                        String text = load(source);
+                        if (cancelled) return;
+                        processed = annotate(text);
+                    } finally {
+                        slots.release();
+                    }
+                    done.incrementAndGet();
+                    post(() -> listener.onImported(source, processed));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    post(() -> listener.onFailed(source, e));
+                }
+                boolean last = finished.incrementAndGet() == total;
+                int d = done.get(), f = failed.get();
+                post(() -> listener.onProgress(d, f, total, last));
+            });
+        }
+        executor.shutdown();
+        if (total == 0) {
+            post(() -> listener.onProgress(0, 0, 0, true));
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    boolean isCancelled() { return cancelled; }
+
+    private static String load(String source) throws IOException {
+        if (source.matches("^(http|https|ftp)://.*$")) {
+            return WikipediaScraper.fetchText(source);
+        }
+        return MappedText.read(Path.of(source));
+    }
+
+    private NLPProcessing annotate(String text) throws IOException {
+        NLPProcessing cached = cache.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        NLPProcessing processed = new NLPProcessing(text, NLPProcessing.ProcessingMode.parallel);
+        cache.putAsync(processed);
+        return processed;
+    }
+
+    private void post(Runnable r) {
+        SwingUtilities.invokeLater(() -> {
+            if (!cancelled) r.run();
+        });
+    }
+
+    // virtual thread per task on 21+, looked up reflectively since we build for 17
+    private static ExecutorService newExecutor(int permits) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(permits, r -> {
+                Thread t = new Thread(r, "bulk-import-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.WikipediaScraper;
+import com.lexparser.scraper.nlp.AnnotationCache;
+import com.lexparser.scraper.nlp.CorpusFile;
+import com.lexparser.scraper.nlp.NLPProcessing;
+import sh.tze.gw_swing.UI.Backend.File.MappedText;
+
+import javax.swing.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Corpus loading off the EDT: fetch -> clean -> annotate (cache lookup or sentence detection),
+ * each load a chain of stages on a small background pool, so several loads run side by side.
+ * Finished loads are handed to the EDT through {@code onLoaded}; tagging, the index build and rendering
+ * carry on in the background from there (streamed annotation, index on completion, render worker).
+ * Stage changes are reported on the EDT through {@code onChange}.
+ */
+final class CorpusLoader {
+
+    enum Stage { queued, fetching, cleaning, annotating }
+
+    // fetching is network bound; a few at a time keeps wikipedia happy and the queue moving
+    private static final int LOADERS = 4;
+
+    /**
+     * One queued or running load. Stage and cancellation are read across threads.
+     */
+    static final class Load {
+        final String url;
+        private volatile Stage stage = Stage.queued;
+        private volatile boolean cancelled;
+        private CompletableFuture<?> future;
+
+        private Load(String url) {
+            this.url = url;
+        }
+
+        Stage stage() { return stage; }
+        boolean isCancelled() { return cancelled; }
+
+        private void enter(Stage next) {
+            if (cancelled) throw new CancellationException(url);
+            stage = next;
+        }
+    }
+
+    // the result of a load, ready to be installed as the current corpus; saved is only set for a corpus file,
+    // whose text stays in the file (text is null then, prepared reads it from there)
+    record Loaded(String url, String text, NLPProcessing prepared, CorpusFile.Metadata saved) {
+    }
+
+    private final AnnotationCache cache;
+    private final Consumer<Loaded> onLoaded;
+    private final BiConsumer<String, Throwable> onFailed; // url, cause
+    private final Runnable onChange;
+    private final List<Load> loads = new ArrayList<>(); // EDT only
+    private final ExecutorService pool = Executors.newFixedThreadPool(LOADERS, new java.util.concurrent.ThreadFactory() {
+        private final AtomicInteger n = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "corpus-loader-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    CorpusLoader(AnnotationCache cache, Consumer<Loaded> onLoaded, BiConsumer<String, Throwable> onFailed, Runnable onChange) {
+        this.cache = cache;
+        this.onLoaded = onLoaded;
+        this.onFailed = onFailed;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Queues a load of a remote url or an absolute local path. EDT only.
+     */
+    Load submit(String url, boolean remote) {
+        Load load = new Load(url);
+        loads.add(load);
+        CompletableFuture<Loaded> chain = !remote && CorpusFile.isCorpusFile(url)
+                ? CompletableFuture.supplyAsync(() -> openSaved(load), pool)
+                : CompletableFuture.supplyAsync(() -> fetchAndClean(load, remote), pool)
+                        .thenApplyAsync(text -> annotate(load, text), pool);
+        return queue(load, chain);
+    }
+
+    /**
+     * Queues text that is already at hand; only the annotate stage (cache lookup or sentence detection) runs. EDT only.
+     */
+    Load submitText(String url, String text) {
+        Load load = new Load(url);
+        loads.add(load);
+        return queue(load, CompletableFuture.supplyAsync(() -> annotate(load, text), pool));
+    }
+
+    private Load queue(Load load, CompletableFuture<Loaded> chain) {
+        load.future = chain.whenComplete((loaded, failure) -> SwingUtilities.invokeLater(() -> finish(load, loaded, failure)));
+        onChange.run();
+        return load;
+    }
+
+    /**
+     * Drops every queued or running load. Whatever is past the handover stays. EDT only.
+     */
+    void cancelAll() {
+        for (Load load : loads) {
+            load.cancelled = true;
+            load.future.cancel(true);
+        }
+        loads.clear();
+        onChange.run();
+    }
+
+    // snapshot of the loads not handed over yet, oldest first. EDT only
+    List<Load> pending() {
+        return new ArrayList<>(loads);
+    }
+
+    //<editor-fold desc="Stages">
+    private String fetchAndClean(Load load, boolean remote) {
+        try {
+            load.enter(Stage.fetching);
+            notifyChange();
+            if (!remote) {
+                return MappedText.read(Path.of(load.url)); // plain text, nothing to clean
+            }
+            // the page is cleaned while it downloads; the first paragraph through moves the load on to cleaning
+            return WikipediaScraper.fetchText(load.url, paragraph -> {
+                if (load.stage() == Stage.fetching) {
+                    load.enter(Stage.cleaning);
+                    notifyChange();
+                } else if (load.isCancelled()) {
+                    throw new CancellationException(load.url); // stop downloading
+                }
+            });
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    private Loaded annotate(Load load, String text) {
+        load.enter(Stage.annotating);
+        notifyChange();
+        // unchanged text -> annotations straight from disk; otherwise only sentence detection happens here,
+        // tagging is started and streamed in once the corpus is installed
+        NLPProcessing prepared = cache.get(text);
+        if (prepared == null) {
+            try {
+                prepared = NLPProcessing.streaming(text, NLPProcessing.ProcessingMode.parallel);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+        load.enter(Stage.annotating); // last chance to drop it before the handover
+        return new Loaded(load.url, text, prepared, null);
+    }
+
+    // a saved corpus comes back annotated, under the url it was loaded from. it is read from the mapped file as it
+    // is shown, nothing is copied here; the index is built on the first filter
+    private Loaded openSaved(Load load) {
+        load.enter(Stage.fetching);
+        notifyChange();
+        try {
+            CorpusFile file = CorpusFile.open(Path.of(load.url));
+            NLPProcessing prepared = file.asNLPProcessing();
+            CorpusFile.Metadata saved = file.getMetadata();
+            load.enter(Stage.annotating); // last chance to drop it before the handover
+            return new Loaded(saved.url() != null ? saved.url() : load.url, null, prepared, saved);
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+    //</editor-fold>
+
+    private void finish(Load load, Loaded loaded, Throwable failure) {
+        if (!loads.remove(load) || load.cancelled) {
+            return; // cancelled meanwhile
+        }
+        onChange.run();
+        if (failure == null) {
+            onLoaded.accept(loaded);
+            return;
+        }
+        Throwable cause = failure;
+        while ((cause instanceof java.util.concurrent.CompletionException || cause instanceof java.io.UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (!(cause instanceof CancellationException)) {
+            onFailed.accept(load.url, cause);
+        }
+    }
+
+    private void notifyChange() {
+        SwingUtilities.invokeLater(onChange);
+    }
+}
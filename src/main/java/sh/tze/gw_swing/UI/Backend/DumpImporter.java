@@ -0,0 +1,180 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.WikipediaDumpReader;
+import com.lexparser.scraper.nlp.AnnotationCache;
+import com.lexparser.scraper.nlp.NLPProcessing;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Imports the articles of a local Wikipedia XML dump (see {@link WikipediaDumpReader}), fully offline.
+ * One thread reads and strips articles into a queue of {@value #QUEUE_PROPERTY} (default 32) articles, one
+ * annotator per core takes them off it, so a dump of any size is read at the pace the annotators keep up with and
+ * only the queued articles are held besides the finished ones. Every annotated article is handed to the EDT through
+ * {@code onImported}; progress, with the throughput in articles per second, a few times a second.
+ * The finished articles stay in memory, every one is in the url history, so an import always has a limit: at most
+ * {@value #MAX_ARTICLES_PROPERTY} (default 10000) articles, whatever the size of the dump.
+ */
+final class DumpImporter {
+
+    static final String QUEUE_PROPERTY = "gw.dump.queue";
+    static final String MAX_ARTICLES_PROPERTY = "gw.dump.maxArticles";
+    private static final int DEFAULT_QUEUE = 32;
+    private static final int DEFAULT_MAX_ARTICLES = 10_000;
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+    private static final WikipediaDumpReader.Article END = new WikipediaDumpReader.Article(null, null, null);
+
+    // progress of one import, reported on the EDT
+    interface Listener {
+        void onImported(String url, NLPProcessing processed);
+        void onFailed(String url, Exception cause);
+        void onProgress(int done, int failed, long pagesSeen, double perSecond, boolean finished);
+    }
+
+    private final AnnotationCache cache;
+    private final Listener listener;
+    private volatile boolean cancelled;
+    private Thread readerThread;
+    private ExecutorService annotators;
+
+    DumpImporter(AnnotationCache cache, Listener listener) {
+        this.cache = cache;
+        this.listener = listener;
+    }
+
+    /**
+     * Whether an import spec names a dump rather than a directory, glob or list.
+     */
+    static boolean isDump(String spec) {
+        String s = spec.toLowerCase(Locale.ROOT);
+        return s.endsWith(".xml") || s.endsWith(".xml.bz2") || s.endsWith(".xml.gz");
+    }
+
+    /**
+     * The most articles one import may take, see {@value #MAX_ARTICLES_PROPERTY}.
+     */
+    static int maxArticles() {
+        return Math.max(1, Integer.getInteger(MAX_ARTICLES_PROPERTY, DEFAULT_MAX_ARTICLES));
+    }
+
+    /**
+     * Starts importing in the background and returns immediately. One import at a time per importer.
+     *
+     * @param titleFilter only articles whose title contains a match, null for all
+     * @param limit       at most this many articles, 1 to {@link #maxArticles()}
+     */
+    void start(Path dump, Pattern titleFilter, int limit) {
+        if (limit < 1 || limit > maxArticles()) {
+            throw new IllegalArgumentException("Article limit must be between 1 and " + maxArticles() + ": " + limit);
+        }
+        int workers = Runtime.getRuntime().availableProcessors();
+        BlockingQueue<WikipediaDumpReader.Article> queue =
+                new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE)));
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong pagesSeen = new AtomicLong();
+        AtomicInteger running = new AtomicInteger(workers); // the last annotator out reports the end
+        AtomicLong lastReport = new AtomicLong();
+        long started = System.nanoTime();
+
+        Runnable report = () -> {
+            int d = done.get(), f = failed.get();
+            long p = pagesSeen.get();
+            double seconds = (System.nanoTime() - started) / 1e9;
+            boolean last = running.get() == 0;
+            post(() -> listener.onProgress(d, f, p, seconds > 0 ? d / seconds : 0, last));
+        };
+
+        readerThread = new Thread(() -> {
+            try (WikipediaDumpReader reader = new WikipediaDumpReader(dump, titleFilter, limit)) {
+                WikipediaDumpReader.Article article;
+                while (!cancelled && (article = reader.next()) != null) {
+                    pagesSeen.set(reader.getPagesSeen());
+                    queue.put(article); // blocks while the annotators are behind
+                }
+                pagesSeen.set(reader.getPagesSeen());
+            } catch (InterruptedException e) {
+                return; // cancelled, nobody waits for the end marks
+            } catch (Exception e) {
+                if (!cancelled) post(() -> listener.onFailed(dump.toString(), e));
+            }
+            try {
+                for (int i = 0; i < workers; i++) queue.put(END);
+            } catch (InterruptedException ignored) {
+            }
+        }, "dump-reader");
+        readerThread.setDaemon(true);
+
+        AtomicInteger n = new AtomicInteger();
+        annotators = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "dump-annotate-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workers; i++) {
+            annotators.execute(() -> {
+                try {
+                    WikipediaDumpReader.Article article;
+                    while ((article = queue.take()) != END && !cancelled) {
+                        try {
+                            NLPProcessing processed = annotate(article.text());
+                            done.incrementAndGet();
+                            String url = article.url();
+                            post(() -> listener.onImported(url, processed));
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            String url = article.url();
+                            post(() -> listener.onFailed(url, e));
+                        }
+                        long now = System.nanoTime(), last = lastReport.get();
+                        if (now - last >= PROGRESS_INTERVAL_NANOS && lastReport.compareAndSet(last, now)) {
+                            report.run();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (running.decrementAndGet() == 0) {
+                    report.run();
+                }
+            });
+        }
+        annotators.shutdown();
+        readerThread.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+        if (readerThread != null) readerThread.interrupt();
+        if (annotators != null) annotators.shutdownNow();
+    }
+
+    boolean isCancelled() { return cancelled; }
+
+    // annotated on the calling worker, one article per core; written to the cache right away so nothing piles up
+    private NLPProcessing annotate(String text) throws IOException {
+        NLPProcessing cached = cache.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        NLPProcessing processed = new NLPProcessing(text, NLPProcessing.ProcessingMode.sequential);
+        cache.put(processed);
+        return processed;
+    }
+
+    private void post(Runnable r) {
+        SwingUtilities.invokeLater(() -> {
+            if (!cancelled) r.run();
+        });
+    }
+}
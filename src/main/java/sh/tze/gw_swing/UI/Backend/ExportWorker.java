@@ -0,0 +1,146 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.nlp.NLPProcessing;
+import com.lexparser.scraper.nlp.SearchResult;
+import sh.tze.gw_swing.UI.Backend.File.IOWrapper;
+import sh.tze.gw_swing.UI.Backend.MainWindowBackend.FilterScheme;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Exports search results into an XML file without holding the EDT.
+ * What gets exported is fixed while the worker is built on the EDT: every (url, corpus, scheme) added, and how many
+ * tokens each corpus had at that moment, so filtering, loading or a corpus still being annotated afterwards doesn't
+ * change the file. Each corpus then runs all its schemes in one {@link FilterBatch}, corpora in parallel, and
+ * documents are written in order as soon as their corpus is done.
+ * {@link #stop()} stops between documents and leaves the target file untouched. It is not {@link #cancel}, which
+ * would report the worker done while the background thread is still writing: a stopped worker counts as running
+ * until that thread has returned, and only then reports the export cancelled.
+ */
+class ExportWorker extends SwingWorker<Integer, Integer> {
+
+    // reported on the EDT
+    interface Listener {
+        void onProgress(int written, int total);
+
+        /**
+         * @param documents documents in the file, 0 if nothing had hits and the file was left alone
+         * @param failure   null unless the export failed
+         */
+        void onFinished(int documents, Exception failure, boolean cancelled);
+    }
+
+    private record Entry(String url, NLPProcessing corpus, FilterScheme scheme, int slot) {
+    }
+
+    private final File file;
+    private final Listener listener;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<NLPProcessing, List<FilterScheme>> batches = new LinkedHashMap<>();
+    private final Map<NLPProcessing, Integer> tokenCounts = new LinkedHashMap<>();
+    private volatile boolean stopping;
+
+    ExportWorker(File file, Listener listener) {
+        this.file = file;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds one document, the hits of {@code scheme} in {@code corpus}. Call on the EDT, before {@link #execute()}.
+     */
+    void add(String url, NLPProcessing corpus, FilterScheme scheme) {
+        var batch = batches.computeIfAbsent(corpus, k -> new ArrayList<>());
+        tokenCounts.computeIfAbsent(corpus, k -> k.getColumnarCorpus().tokenCount()); // the annotated prefix, as of now
+        entries.add(new Entry(url, corpus, scheme, batch.size()));
+        batch.add(scheme);
+    }
+
+    boolean isEmpty() { return entries.isEmpty(); }
+
+    int size() { return entries.size(); }
+
+    /**
+     * Stops before the next document, or before the file is moved into place. Reported through
+     * {@code onFinished(0, null, true)} once the background thread has actually stopped; until then
+     * {@link #isDone()} is false.
+     */
+    void stop() {
+        stopping = true;
+    }
+
+    boolean isStopping() { return stopping; }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        Map<NLPProcessing, CompletableFuture<List<List<List<SearchResult>>>>> running = new LinkedHashMap<>();
+        batches.forEach((corpus, schemes) -> running.put(corpus,
+                CompletableFuture.supplyAsync(() -> FilterBatch.run(corpus, schemes, tokenCounts.get(corpus)))));
+        try {
+            return IOWrapper.exportXML(file.getAbsolutePath(), writer -> {
+                int done = 0;
+                for (Entry entry : entries) {
+                    var results = await(running.get(entry.corpus())).get(entry.slot());
+                    if (stopping) throw new CancellationException(); // exportXML drops the partial file
+                    writer.writeSearchResults(entry.url(), "", entry.scheme().toStringAsListEntry(), results); // No date available
+                    publish(++done);
+                }
+            }, () -> stopping);
+        } finally {
+            running.values().forEach(f -> f.cancel(false));
+        }
+    }
+
+    // a corpus' batch, but no waiting for it past a stop
+    private <T> T await(CompletableFuture<T> batch) throws IOException {
+        while (true) {
+            if (stopping) throw new CancellationException();
+            try {
+                return batch.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // look again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Export interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) throw r;
+                if (e.getCause() instanceof Error err) throw err;
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    protected void process(List<Integer> chunks) {
+        if (!stopping) listener.onProgress(chunks.get(chunks.size() - 1), entries.size());
+    }
+
+    // runs once doInBackground has returned, stopped or not
+    @Override
+    protected void done() {
+        try {
+            listener.onFinished(get(), null, false);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                listener.onFinished(0, null, true);
+            } else {
+                listener.onFinished(0, e.getCause() instanceof Exception c ? c : e, false);
+            }
+        } catch (CancellationException e) { // cancel() after all, nothing is left running
+            listener.onFinished(0, null, true);
+        } catch (InterruptedException e) {
+            listener.onFinished(0, e, false);
+        }
+    }
+}
@@ -4,18 +4,43 @@ import com.lexparser.scraper.nlp.AnnotatedToken;
 import com.lexparser.scraper.nlp.NLPProcessing;
 import com.lexparser.scraper.nlp.SearchResult;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Exports go straight to disk as UTF-8 through {@link XML.CorpusWriter}, gzipped on the fly when the file name
+ * ends in .gz. They are written next to the target and only moved over it once complete, so a failed export
+ * never leaves a truncated file behind. They are read back the same way, see {@link #openXML(String)}.
+ */
 public class IOWrapper {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes the documents of an export, as they are produced.
+     */
+    @FunctionalInterface
+    public interface XMLExport {
+        void write(XML.CorpusWriter writer) throws IOException;
+    }
+
     public static void saveToXML(List<List<List<AnnotatedToken>>> documents,
                                  List<String> urls,
                                  List<String> filterSchemes,
@@ -24,8 +49,7 @@ public class IOWrapper {
         List<String> dates = new ArrayList<>();
         dates.add(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
 
-        String xmlContent = XML.toXML(documents, urls, dates, filterSchemes);
-        Files.writeString(Paths.get(filePath), xmlContent, StandardCharsets.UTF_8);
+        exportXML(filePath, writer -> XML.writeDocuments(writer, documents, urls, dates, filterSchemes));
     }
 
 
@@ -35,11 +59,89 @@ public class IOWrapper {
             Map<String, String> urlToFilterSchemeMap,
             String filePath) throws IOException {
 
-        String xmlContent = XML.toXMLFromMultipleSearchResults(
-                urlToResultsMap, urlToDateMap, urlToFilterSchemeMap);
+        exportXML(filePath, writer -> XML.writeSearchResults(writer, urlToResultsMap, urlToDateMap, urlToFilterSchemeMap));
+    }
+
+    /**
+     * Runs an export into {@code filePath}.
+     *
+     * @return the number of documents written; with none, the file is left untouched
+     */
+    public static int exportXML(String filePath, XMLExport export) throws IOException {
+        return exportXML(filePath, export, () -> false);
+    }
+
+    /**
+     * Runs an export into {@code filePath} that can be called off. {@code cancelled} is asked once more right before
+     * the finished file is moved over the target, so an export cancelled while it was finishing leaves it alone too.
+     *
+     * @return the number of documents written; with none, the file is left untouched
+     * @throws CancellationException if it was cancelled, the target is untouched then
+     */
+    public static int exportXML(String filePath, XMLExport export, BooleanSupplier cancelled) throws IOException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), ".export", ".part");
+        try {
+            int documents;
+            try (XML.CorpusWriter writer = XML.CorpusWriter.to(open(tmp, isGzip(target)))) {
+                export.write(writer);
+                writer.finish();
+                documents = writer.getDocumentCount();
+            }
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            if (documents > 0) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return documents;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Opens an export for reading, gunzipped on the fly when the file name ends in .gz.
+     */
+    public static XML.CorpusReader openXML(String filePath) throws IOException {
+        Path file = Paths.get(filePath);
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            return XML.CorpusReader.from(isGzip(file) ? new GZIPInputStream(in, BUFFER_SIZE) : in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a file is one of our exports (a corpus-collection), as opposed to other xml such as a wiki dump.
+     * Only looks at the root element.
+     */
+    public static boolean isExport(String filePath) {
+        String name = filePath.toLowerCase(Locale.ROOT);
+        if (!name.endsWith(".xml") && !name.endsWith(".xml.gz") || !Files.isRegularFile(Paths.get(filePath))) {
+            return false;
+        }
+        try (XML.CorpusReader reader = openXML(filePath)) {
+            return "corpus-collection".equals(reader.rootElement());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
 
-        try (java.io.FileWriter writer = new java.io.FileWriter(filePath)) {
-            writer.write(xmlContent);
+    private static OutputStream open(Path file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            // the xml writer hands over a few bytes at a time, buffer them before they reach the deflater
+            return new BufferedOutputStream(gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out, BUFFER_SIZE);
+        } catch (IOException e) {
+            out.close();
+            throw e;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package sh.tze.gw_swing.UI.Backend.File;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a local UTF-8 text file. Large files are mapped and decoded straight from the mapping,
+ * so the bytes are never copied onto the heap first; small ones go through Files.readString.
+ * Malformed input fails the same way Files.readString does.
+ */
+public class MappedText {
+
+    public static final String THRESHOLD_PROPERTY = "gw.mappedText.threshold";
+    private static final long DEFAULT_THRESHOLD = 1024 * 1024;
+
+    private MappedText() {
+    }
+
+    public static String read(Path path) throws IOException {
+        long threshold = Long.getLong(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < threshold) {
+                return Files.readString(path);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to load as one text: " + path + " (" + size + " bytes)");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            return decoder.decode(mapped).toString();
+        }
+    }
+}
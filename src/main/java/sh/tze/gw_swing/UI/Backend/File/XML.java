@@ -4,7 +4,14 @@ import com.lexparser.scraper.nlp.AnnotatedToken;
 import com.lexparser.scraper.nlp.SearchResult;
 
 import javax.xml.stream.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -18,191 +25,386 @@ public class XML {
                                List<String> dates,
                                List<String> filterSchemes) {
         StringWriter stringWriter = new StringWriter();
-        try {
-            XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
-            XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(stringWriter);
-
-            writer.writeStartDocument("UTF-8", "1.0");
-            writer.writeStartElement("corpus-collection");
-
-            // List<List<AnnotatedToken>> is a document
-            for (int docIndex = 0; docIndex < documents.size(); docIndex++) {
-                List<List<AnnotatedToken>> document = documents.get(docIndex);
-
-                writer.writeStartElement("document");
-                writer.writeAttribute("id", String.valueOf(docIndex));
+        try (CorpusWriter writer = CorpusWriter.to(stringWriter)) {
+            writeDocuments(writer, documents, urls, dates, filterSchemes);
+            writer.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating XML: " + e.getMessage(), e);
+        }
+        return stringWriter.toString();
+    }
 
-                writer.writeStartElement("metadata");
+    public static String toXMLFromMultipleSearchResults(
+            Map<String, List<List<SearchResult>>> urlToResultsMap,
+            Map<String, String> urlToDateMap,
+            Map<String, String> urlToFilterSchemeMap) {
+        StringWriter stringWriter = new StringWriter();
+        try (CorpusWriter writer = CorpusWriter.to(stringWriter)) {
+            writeSearchResults(writer, urlToResultsMap, urlToDateMap, urlToFilterSchemeMap);
+            writer.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating XML: " + e.getMessage(), e);
+        }
+        return stringWriter.toString();
+    }
 
-                // URL
-                if (urls != null && docIndex < urls.size()) {
-                    writer.writeStartElement("url");
-                    writer.writeCharacters(urls.get(docIndex));
-                    writer.writeEndElement();
-                }
+    // the documents of toXML, metadata only where given
+    static void writeDocuments(CorpusWriter writer,
+                               List<List<List<AnnotatedToken>>> documents,
+                               List<String> urls,
+                               List<String> dates,
+                               List<String> filterSchemes) throws IOException {
+        for (int docIndex = 0; docIndex < documents.size(); docIndex++) {
+            writer.writeDocument(
+                    urls != null && docIndex < urls.size() ? urls.get(docIndex) : null,
+                    dates != null && docIndex < dates.size() ? dates.get(docIndex) : null,
+                    filterSchemes != null && docIndex < filterSchemes.size() ? filterSchemes.get(docIndex) : null,
+                    documents.get(docIndex));
+        }
+    }
 
-                // Date, actually not sure if to add date
-                // because the page retrieval date is not recorded,
-                // and as for the XML file creation date, file system have it
-                if (dates != null && docIndex < dates.size()) {
-                    writer.writeStartElement("date");
-                    writer.writeCharacters(dates.get(docIndex));
-                    writer.writeEndElement();
-                }
+    static void writeSearchResults(CorpusWriter writer,
+                                   Map<String, List<List<SearchResult>>> urlToResultsMap,
+                                   Map<String, String> urlToDateMap,
+                                   Map<String, String> urlToFilterSchemeMap) throws IOException {
+        for (Map.Entry<String, List<List<SearchResult>>> entry : urlToResultsMap.entrySet()) {
+            String url = entry.getKey();
+            writer.writeSearchResults(url, urlToDateMap.get(url), urlToFilterSchemeMap.get(url), entry.getValue());
+        }
+    }
 
-                // FilterScheme
-                if (filterSchemes != null && docIndex < filterSchemes.size()) {
-                    writer.writeStartElement("filter-scheme");
-                    writer.writeCharacters(filterSchemes.get(docIndex));
-                    writer.writeEndElement();
-                }
+    /**
+     * Writes a {@code corpus-collection} one document at a time, straight into its target.
+     * Nothing but the document being written is held, so exporting costs the same memory whatever its size.
+     * Call {@link #finish()} after the last document; closing without it leaves the collection unterminated.
+     */
+    public static final class CorpusWriter implements Closeable {
+        private final XMLStreamWriter writer;
+        private final Closeable target;
+        private int docId;
+        private boolean finished;
+
+        private CorpusWriter(XMLStreamWriter writer, Closeable target) throws IOException {
+            this.writer = writer;
+            this.target = target;
+            try {
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeStartElement("corpus-collection");
+            } catch (XMLStreamException e) {
+                throw asIOException(e);
+            }
+        }
 
-                writer.writeEndElement(); // end metadata
+        /**
+         * Writes UTF-8 into {@code out}, which should be buffered. Closing the writer closes {@code out}.
+         */
+        public static CorpusWriter to(OutputStream out) throws IOException {
+            try {
+                return new CorpusWriter(XMLOutputFactory.newInstance().createXMLStreamWriter(out, StandardCharsets.UTF_8.name()), out);
+            } catch (XMLStreamException e) {
+                throw asIOException(e);
+            }
+        }
 
-                // processe sentence
-                writer.writeStartElement("sentences");
+        public static CorpusWriter to(Writer out) throws IOException {
+            try {
+                return new CorpusWriter(XMLOutputFactory.newInstance().createXMLStreamWriter(out), out);
+            } catch (XMLStreamException e) {
+                throw asIOException(e);
+            }
+        }
 
-                for (List<AnnotatedToken> sentence : document) {
+        /**
+         * Writes a whole document; url, date and filterScheme are left out when null.
+         */
+        public void writeDocument(String url, String date, String filterScheme,
+                                  List<? extends List<AnnotatedToken>> sentences) throws IOException {
+            try {
+                startDocument(url, date, filterScheme, false);
+                for (List<AnnotatedToken> sentence : sentences) {
                     writer.writeStartElement("sentence");
-
                     for (AnnotatedToken token : sentence) {
-                        writer.writeStartElement("token");
-
-                        // WordForm
-                        writer.writeStartElement("form");
-                        writer.writeCharacters(token.getForm());
-                        writer.writeEndElement();
-
-                        // POS tag
-                        writer.writeStartElement("pos");
-                        writer.writeCharacters(token.getPos());
-                        writer.writeEndElement();
-
-                        // Lemma
-                        writer.writeStartElement("lemma");
-                        writer.writeCharacters(token.getLemma());
-                        writer.writeEndElement();
-
-                        writer.writeEndElement(); // end token
+                        writeToken(token, false);
                     }
-
                     writer.writeEndElement(); // end sentence
                 }
-
-                writer.writeEndElement(); // end sentences
-                writer.writeEndElement(); // end document
+                endDocument();
+            } catch (XMLStreamException e) {
+                throw asIOException(e);
             }
-
-            writer.writeEndElement(); // end corpus-collection
-            writer.writeEndDocument();
-
-            writer.flush();
-            writer.close();
-
-            return stringWriter.toString();
-
-        } catch (XMLStreamException e) {
-            throw new RuntimeException("Error creating XML: " + e.getMessage(), e);
         }
-    }
 
-    public static String toXMLFromMultipleSearchResults(
-            Map<String, List<List<SearchResult>>> urlToResultsMap,
-            Map<String, String> urlToDateMap,
-            Map<String, String> urlToFilterSchemeMap) {
-
-        StringWriter stringWriter = new StringWriter();
-        try {
-            XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
-            XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(stringWriter);
+        /**
+         * Writes the sentences of some search hits as a document, the hit token marked {@code matched="true"}.
+         * Nothing is written when there are no hits.
+         *
+         * @return whether a document was written
+         */
+        public boolean writeSearchResults(String url, String date, String filterScheme,
+                                          List<? extends List<SearchResult>> resultGroups) throws IOException {
+            if (resultGroups.isEmpty()) return false;
+            try {
+                startDocument(url != null ? url : "", date != null ? date : "", filterScheme != null ? filterScheme : "", true);
+                for (List<SearchResult> resultGroup : resultGroups) {
+                    for (SearchResult result : resultGroup) {
+                        writer.writeStartElement("sentence");
+                        List<AnnotatedToken> sentence = result.getSentence();
+                        int matchIndex = result.getIndex();
+                        for (int i = 0; i < sentence.size(); i++) {
+                            writeToken(sentence.get(i), i == matchIndex);
+                        }
+                        writer.writeEndElement(); // end sentence
+                    }
+                }
+                endDocument();
+                return true;
+            } catch (XMLStreamException e) {
+                throw asIOException(e);
+            }
+        }
 
-            writer.writeStartDocument("UTF-8", "1.0");
-            writer.writeStartElement("corpus-collection");
+        /**
+         * Documents written so far.
+         */
+        public int getDocumentCount() { return docId; }
+
+        /**
+         * Closes the collection and flushes everything into the target.
+         */
+        public void finish() throws IOException {
+            try {
+                writer.writeEndElement(); // end corpus-collection
+                writer.writeEndDocument();
+                writer.flush();
+                finished = true;
+            } catch (XMLStreamException e) {
+                throw asIOException(e);
+            }
+        }
 
-            // Process each URL and its search results
-            int docId = 0;
-            for (Map.Entry<String, List<List<SearchResult>>> entry : urlToResultsMap.entrySet()) {
-                String url = entry.getKey();
-                List<List<SearchResult>> searchResults = entry.getValue();
+        public boolean isFinished() { return finished; }
 
-                if (searchResults.isEmpty()) continue;
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.close(); // doesn't close the target
+            } catch (XMLStreamException e) {
+                // the target is closed below either way
+            } finally {
+                target.close();
+            }
+        }
 
-                writer.writeStartElement("document");
-                writer.writeAttribute("id", String.valueOf(docId++));
+        private void startDocument(String url, String date, String filterScheme, boolean always) throws XMLStreamException {
+            writer.writeStartElement("document");
+            writer.writeAttribute("id", String.valueOf(docId++));
 
-                // Write metadata
-                writer.writeStartElement("metadata");
+            writer.writeStartElement("metadata");
 
-                // URL
+            // URL
+            if (always || url != null) {
                 writer.writeStartElement("url");
-                writer.writeCharacters(url != null ? url : "");
+                writer.writeCharacters(url);
                 writer.writeEndElement();
+            }
 
-                // Date
-                String date = urlToDateMap.get(url);
+            // Date, actually not sure if to add date
+            // because the page retrieval date is not recorded,
+            // and as for the XML file creation date, file system have it
+            if (always || date != null) {
                 writer.writeStartElement("date");
-                writer.writeCharacters(date != null ? date : "");
+                writer.writeCharacters(date);
                 writer.writeEndElement();
+            }
 
-                // FilterScheme
-                String filterScheme = urlToFilterSchemeMap.get(url);
+            // FilterScheme
+            if (always || filterScheme != null) {
                 writer.writeStartElement("filter-scheme");
-                writer.writeCharacters(filterScheme != null ? filterScheme : "");
+                writer.writeCharacters(filterScheme);
                 writer.writeEndElement();
+            }
 
-                writer.writeEndElement(); // end metadata
+            writer.writeEndElement(); // end metadata
 
-                // Write sentences
-                writer.writeStartElement("sentences");
+            writer.writeStartElement("sentences");
+        }
 
-                for (List<SearchResult> resultGroup : searchResults) {
-                    for (SearchResult result : resultGroup) {
-                        writer.writeStartElement("sentence");
+        private void endDocument() throws XMLStreamException {
+            writer.writeEndElement(); // end sentences
+            writer.writeEndElement(); // end document
+        }
 
-                        List<AnnotatedToken> sentence = result.getSentence();
-                        int matchIndex = result.getIndex();
+        private void writeToken(AnnotatedToken token, boolean matched) throws XMLStreamException {
+            writer.writeStartElement("token");
 
-                        for (int i = 0; i < sentence.size(); i++) {
-                            AnnotatedToken token = sentence.get(i);
-                            writer.writeStartElement("token");
+            if (matched) {
+                writer.writeAttribute("matched", "true");
+            }
 
-                            if (i == matchIndex) {
-                                writer.writeAttribute("matched", "true");
-                            }
+            // WordForm
+            writer.writeStartElement("form");
+            writer.writeCharacters(token.getForm());
+            writer.writeEndElement();
 
-                            writer.writeStartElement("form");
-                            writer.writeCharacters(token.getForm());
-                            writer.writeEndElement();
+            // POS tag
+            writer.writeStartElement("pos");
+            writer.writeCharacters(token.getPos());
+            writer.writeEndElement();
 
-                            writer.writeStartElement("pos");
-                            writer.writeCharacters(token.getPos());
-                            writer.writeEndElement();
+            // Lemma
+            writer.writeStartElement("lemma");
+            writer.writeCharacters(token.getLemma());
+            writer.writeEndElement();
 
-                            writer.writeStartElement("lemma");
-                            writer.writeCharacters(token.getLemma());
-                            writer.writeEndElement();
+            writer.writeEndElement(); // end token
+        }
 
-                            writer.writeEndElement(); // end token
-                        }
+        // the stax writer reports failures of the underlying stream as its own exception
+        private static IOException asIOException(XMLStreamException e) {
+            if (e.getNestedException() instanceof IOException io) return io;
+            if (e.getCause() instanceof IOException io) return io;
+            return new IOException("Error creating XML: " + e.getMessage(), e);
+        }
+    }
 
-                        writer.writeEndElement(); // end sentence
-                    }
-                }
+    /**
+     * One {@code document} of a corpus-collection; url, date and filterScheme are null when left out.
+     */
+    public record Document(String url, String date, String filterScheme, List<List<AnnotatedToken>> sentences) {
+    }
+
+    /**
+     * Reads a {@code corpus-collection} back one document at a time, so only the document being read is held,
+     * whatever the size of the file. Tokens keep their form, pos and lemma; the {@code matched} mark is dropped.
+     * DTDs and external entities are off.
+     */
+    public static final class CorpusReader implements Closeable {
+        private static final XMLInputFactory FACTORY = newInputFactory();
+
+        private final XMLStreamReader reader;
+        private final Closeable source;
+
+        private CorpusReader(XMLStreamReader reader, Closeable source) {
+            this.reader = reader;
+            this.source = source;
+        }
 
-                writer.writeEndElement(); // end sentences
-                writer.writeEndElement(); // end document
+        /**
+         * Reads from {@code in}, which should be buffered. Closing the reader closes {@code in}.
+         */
+        public static CorpusReader from(InputStream in) throws IOException {
+            try {
+                return new CorpusReader(FACTORY.createXMLStreamReader(in), in);
+            } catch (XMLStreamException e) {
+                in.close();
+                throw new IOException("Not an xml file: " + e.getMessage(), e);
             }
+        }
 
-            writer.writeEndElement(); // end corpus-collection
-            writer.writeEndDocument();
+        private static XMLInputFactory newInputFactory() {
+            XMLInputFactory f = XMLInputFactory.newInstance();
+            f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            f.setProperty(XMLInputFactory.IS_COALESCING, true);
+            return f;
+        }
 
-            writer.flush();
-            writer.close();
+        /**
+         * The name of the root element, e.g. to tell an export from other xml; reads no further than that.
+         */
+        public String rootElement() throws IOException {
+            try {
+                while (reader.hasNext()) {
+                    if (reader.isStartElement()) return reader.getLocalName();
+                    reader.next();
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException("Malformed xml: " + e.getMessage(), e);
+            }
+        }
 
-            return stringWriter.toString();
+        /**
+         * The next document, or null at the end of the collection.
+         */
+        public Document next() throws IOException {
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("document")) {
+                        return readDocument();
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException("Malformed xml at line " + e.getLocation().getLineNumber() + ": " + e.getMessage(), e);
+            }
+        }
 
-        } catch (XMLStreamException e) {
-            throw new RuntimeException("Error creating XML: " + e.getMessage(), e);
+        // reads up to </document>
+        private Document readDocument() throws XMLStreamException {
+            String url = null, date = null, filterScheme = null;
+            List<List<AnnotatedToken>> sentences = new ArrayList<>();
+            List<AnnotatedToken> sentence = null;
+            int depth = 1;
+            while (depth > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (reader.getLocalName().equals("sentence") && sentence != null) {
+                        sentences.add(sentence);
+                        sentence = null;
+                    }
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                switch (reader.getLocalName()) {
+                    case "url" -> url = reader.getElementText();
+                    case "date" -> date = reader.getElementText();
+                    case "filter-scheme" -> filterScheme = reader.getElementText();
+                    case "sentence" -> {
+                        sentence = new ArrayList<>();
+                        depth++;
+                    }
+                    case "token" -> {
+                        AnnotatedToken token = readToken();
+                        if (sentence != null) sentence.add(token);
+                    }
+                    default -> depth++;
+                }
+            }
+            return new Document(url, date, filterScheme, sentences);
+        }
+
+        // reads up to </token>; a missing part is empty
+        private AnnotatedToken readToken() throws XMLStreamException {
+            String form = "", pos = "", lemma = "";
+            int depth = 1;
+            while (depth > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                switch (reader.getLocalName()) {
+                    case "form" -> form = reader.getElementText();
+                    case "pos" -> pos = reader.getElementText();
+                    case "lemma" -> lemma = reader.getElementText();
+                    default -> depth++;
+                }
+            }
+            return new AnnotatedToken(form, pos, lemma);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reader.close(); // doesn't close the source
+            } catch (XMLStreamException e) {
+                // the source is closed below either way
+            } finally {
+                source.close();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.nlp.CaseFolding;
+import com.lexparser.scraper.nlp.ColumnarCorpus;
+import com.lexparser.scraper.nlp.InvertedIndex;
+import com.lexparser.scraper.nlp.NLPProcessing;
+import com.lexparser.scraper.nlp.SearchResult;
+import sh.tze.gw_swing.UI.Backend.MainWindowBackend.FilterScheme;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs many filter schemes over one corpus at once, with the results of
+ * {@link MainWindowBackend#doFilter(NLPProcessing, FilterScheme)} for each.
+ * Instead of a match and an occurrence lookup per scheme and per distinct hit, every scheme is evaluated in two
+ * shared passes over the corpus columns: the first collects each scheme's distinct hits, the second gathers the
+ * occurrences of all of them together, one buffer per occurrence class however many schemes ask for it.
+ * Reads the corpus only; different corpora can be run on different threads.
+ */
+final class FilterBatch {
+
+    private FilterBatch() {
+    }
+
+    /**
+     * @return per scheme, in order, the same groups doFilter returns for it
+     */
+    static List<List<List<SearchResult>>> run(NLPProcessing nlp, List<FilterScheme> schemes) {
+        return run(nlp, schemes, nlp.getColumnarCorpus().tokenCount()); // the annotated prefix, if still streaming
+    }
+
+    /**
+     * Like {@link #run(NLPProcessing, List)} over the first {@code tokens} tokens only, e.g. what had been annotated
+     * when a snapshot was taken.
+     */
+    static List<List<List<SearchResult>>> run(NLPProcessing nlp, List<FilterScheme> schemes, int tokens) {
+        ColumnarCorpus corpus = nlp.getColumnarCorpus();
+        ColumnarCorpus.View columns = corpus.view(); // one consistent view, even while the corpus still grows
+        tokens = Math.min(tokens, columns.tokenCount());
+        Folds folds = new Folds(columns, nlp.getIndex());
+
+        List<Query> queries = new ArrayList<>(schemes.size());
+        for (FilterScheme fs : schemes) {
+            queries.add(new Query(fs, corpus, folds));
+        }
+
+        // pass 1: every scheme's distinct hits (by folded form/pos/lemma, like doFilter), first occurrence first
+        for (int t = 0; t < tokens; t++) {
+            int form = columns.formId(t), lemma = columns.lemmaId(t), pos = columns.posCode(t);
+            int foldedForm = folds.term(form), foldedLemma = folds.term(lemma);
+            long identity = -1;
+            for (Query q : queries) {
+                if (!q.accepts(form, lemma, pos, foldedForm, foldedLemma)) continue;
+                if (identity < 0) identity = key(foldedForm, foldedLemma, folds.tag(pos));
+                if (q.seen.add(identity)) q.hits.add(t);
+            }
+        }
+
+        // pass 2: the occurrences of every hit, exact for case-sensitive schemes and folded otherwise
+        Map<Long, Positions> exact = new HashMap<>();
+        Map<Long, Positions> folded = new HashMap<>();
+        for (Query q : queries) {
+            for (int t : q.hits.toArray()) {
+                Map<Long, Positions> classes = q.fs.caseSensitive() ? exact : folded;
+                q.groups.add(classes.computeIfAbsent(q.occurrenceKey(t, columns, folds), k -> new Positions()));
+            }
+        }
+        if (!exact.isEmpty() || !folded.isEmpty()) {
+            for (int t = 0; t < tokens; t++) {
+                int form = columns.formId(t), lemma = columns.lemmaId(t), pos = columns.posCode(t);
+                if (!exact.isEmpty()) {
+                    Positions p = exact.get(key(form, lemma, pos));
+                    if (p != null) p.add(t);
+                }
+                if (!folded.isEmpty()) {
+                    Positions p = folded.get(key(folds.term(form), folds.term(lemma), folds.tag(pos)));
+                    if (p != null) p.add(t);
+                }
+            }
+        }
+
+        // pass 3 of doFilter, the range around each occurrence
+        List<List<List<SearchResult>>> results = new ArrayList<>(queries.size());
+        for (Query q : queries) {
+            List<List<SearchResult>> hitsOfScheme = new ArrayList<>();
+            for (Positions occurrences : q.groups) {
+                List<SearchResult> hits = switch (q.fs.rs()) {
+                    case whole_sentence -> nlp.inSentence(occurrences.toArray());
+                    case of_neighbour -> nlp.withNeighbors(occurrences.toArray(), q.fs.l(), q.fs.r(), tokens);
+                    default -> List.of();
+                };
+                if (!hits.isEmpty()) {
+                    hitsOfScheme.add(hits);
+                }
+            }
+            results.add(hitsOfScheme);
+        }
+        return results;
+    }
+
+    // form and lemma ids below 2^28, tag codes below 2^8
+    private static long key(int form, int lemma, int pos) {
+        return (long) form << 36 | (long) lemma << 8 | pos;
+    }
+
+    // one scheme's keys as ids, and what it has found so far
+    private static final class Query {
+        private static final int ABSENT = -2; // a key that is not in the corpus matches nothing
+
+        final FilterScheme fs;
+        private final boolean byForm, byLemma, byPos, active;
+        private final int formKey, lemmaKey, posKey;
+        final Set<Long> seen = new HashSet<>();
+        final Positions hits = new Positions();
+        final List<Positions> groups = new ArrayList<>();
+
+        Query(FilterScheme fs, ColumnarCorpus corpus, Folds folds) {
+            this.fs = fs;
+            byForm = fs.wf() != null && !fs.wf().isBlank();
+            byLemma = fs.lemma() != null && !fs.lemma().isBlank();
+            byPos = fs.pos() != null && !fs.pos().isBlank();
+            active = !fs.isInvalid() && (byForm || byLemma || byPos);
+            formKey = byForm ? termKey(fs.wf(), fs.caseSensitive(), corpus, folds) : ABSENT;
+            lemmaKey = byLemma ? termKey(fs.lemma(), fs.caseSensitive(), corpus, folds) : ABSENT;
+            int tag = byPos ? corpus.tagCodeOf(fs.pos()) : -1; // POS always compares exactly
+            posKey = tag < 0 ? ABSENT : tag;
+        }
+
+        private static int termKey(String s, boolean caseSensitive, ColumnarCorpus corpus, Folds folds) {
+            int id = caseSensitive ? corpus.termId(s) : folds.of(s);
+            return id < 0 ? ABSENT : id;
+        }
+
+        boolean accepts(int form, int lemma, int pos, int foldedForm, int foldedLemma) {
+            if (!active) return false;
+            boolean cs = fs.caseSensitive();
+            return (!byForm || (cs ? form : foldedForm) == formKey)
+                    && (!byLemma || (cs ? lemma : foldedLemma) == lemmaKey)
+                    && (!byPos || pos == posKey);
+        }
+
+        long occurrenceKey(int t, ColumnarCorpus.View columns, Folds folds) {
+            int form = columns.formId(t), lemma = columns.lemmaId(t), pos = columns.posCode(t);
+            return fs.caseSensitive() ? key(form, lemma, pos) : key(folds.term(form), folds.term(lemma), folds.tag(pos));
+        }
+    }
+
+    // case-folded ids of terms and tags; the index's when the corpus has one, else worked out once per batch
+    private static final class Folds {
+        private final InvertedIndex index;
+        private final int[] termFolds;
+        private final Map<String, Integer> foldIds;
+        private final int[] tagFolds;
+
+        Folds(ColumnarCorpus.View columns, InvertedIndex index) {
+            this.index = index;
+            if (index == null) {
+                foldIds = new HashMap<>();
+                termFolds = new int[columns.vocabularySize()];
+                for (int id = 0; id < termFolds.length; id++) {
+                    termFolds[id] = foldIds.computeIfAbsent(CaseFolding.fold(columns.term(id)), k -> foldIds.size());
+                }
+            } else {
+                foldIds = null;
+                termFolds = null;
+            }
+            Map<String, Integer> tagIds = new HashMap<>();
+            tagFolds = new int[columns.tagsetSize()];
+            for (int code = 0; code < tagFolds.length; code++) {
+                tagFolds[code] = tagIds.computeIfAbsent(CaseFolding.fold(columns.tag(code)), k -> tagIds.size());
+            }
+        }
+
+        int term(int termId) {
+            return index != null ? index.foldOf(termId) : termFolds[termId];
+        }
+
+        int tag(int code) {
+            return tagFolds[code];
+        }
+
+        // -1 when no term of the corpus folds to the same
+        int of(String s) {
+            if (index != null) return index.foldId(s);
+            return foldIds.getOrDefault(CaseFolding.fold(s), -1);
+        }
+    }
+
+    private static final class Positions {
+        private int[] items = new int[8];
+        private int size;
+
+        void add(int p) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = p;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
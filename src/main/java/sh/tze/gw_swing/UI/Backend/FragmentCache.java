@@ -0,0 +1,115 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.nlp.AnnotatedToken;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Rendered interlinear html of sentences / neighbour windows, keyed by (corpus, first token, end token).
+ * Only the plain fragment is stored, together with where each token sits on each of the three lines;
+ * a highlighted variant is produced by splicing the bold markers in at those offsets, so a hit never
+ * renders the sentence again whatever token is bolded.
+ * LRU over a byte budget ({@value #MAX_BYTES_PROPERTY}, default 32 MB). Thread-safe, the render worker uses it.
+ */
+final class FragmentCache {
+
+    static final String MAX_BYTES_PROPERTY = "gw.fragmentCache.maxBytes";
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD = 96; // key, map node, arrays and string headers, roughly
+
+    private static final String BOLD_OPEN = "<b>";
+    private static final String BOLD_CLOSE = "</b>";
+
+    private record Key(Object corpus, int from, int to) { // corpora compare by identity
+    }
+
+    // starts[3 * j + line] is where token j begins on that line; ends likewise
+    private record Fragment(String html, int[] starts, int[] ends) {
+        long weight() {
+            return ENTRY_OVERHEAD + 2L * html.length() + 4L * (starts.length + ends.length);
+        }
+    }
+
+    private final long maxBytes;
+    private long bytes;
+    private final LinkedHashMap<Key, Fragment> entries = new LinkedHashMap<>(256, 0.75f, true); // access order
+
+    FragmentCache() {
+        this(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+    }
+
+    FragmentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Interlinear html of {@code tokens} with token {@code boldAt} in bold (-1 for none).
+     * {@code corpus}, {@code from} and {@code to} identify the token run; pass a null corpus to bypass the cache.
+     */
+    String render(Object corpus, int from, int to, List<AnnotatedToken> tokens, int boldAt) {
+        Fragment f;
+        if (corpus == null) {
+            f = build(tokens);
+        } else {
+            Key key = new Key(corpus, from, to);
+            synchronized (this) {
+                f = entries.get(key);
+            }
+            if (f == null) {
+                f = build(tokens); // outside the lock, two threads may build the same one; harmless
+                store(key, f);
+            }
+        }
+        return boldAt < 0 || 3 * boldAt >= f.starts().length ? f.html() : splice(f, boldAt);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private synchronized void store(Key key, Fragment f) {
+        Fragment old = entries.put(key, f);
+        if (old != null) bytes -= old.weight();
+        bytes += f.weight();
+        var it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) { // least recently used first
+            bytes -= it.next().weight();
+            it.remove();
+        }
+    }
+
+    private static Fragment build(List<AnnotatedToken> tokens) {
+        int n = tokens.size();
+        int[] starts = new int[3 * n];
+        int[] ends = new int[3 * n];
+        StringBuilder sb = new StringBuilder(n * 24 + 24);
+        for (int line = 0; line < 3; line++) {
+            for (int j = 0; j < n; j++) {
+                var w = tokens.get(j);
+                starts[3 * j + line] = sb.length();
+                sb.append(line == 0 ? w.getForm() : line == 1 ? w.getLemma() : w.getPos());
+                ends[3 * j + line] = sb.length();
+                sb.append(' ');
+            }
+            sb.append("<br>");
+        }
+        sb.append("<hr>");
+        return new Fragment(sb.toString(), starts, ends);
+    }
+
+    // "... form ..." -> "... <b>form</b> ..." on all three lines
+    private static String splice(Fragment f, int j) {
+        String html = f.html();
+        StringBuilder sb = new StringBuilder(html.length() + 3 * (BOLD_OPEN.length() + BOLD_CLOSE.length()));
+        int at = 0;
+        for (int line = 0; line < 3; line++) {
+            int s = f.starts()[3 * j + line];
+            int e = f.ends()[3 * j + line];
+            sb.append(html, at, s).append(BOLD_OPEN).append(html, s, e).append(BOLD_CLOSE);
+            at = e;
+        }
+        return sb.append(html, at, html.length()).toString();
+    }
+}
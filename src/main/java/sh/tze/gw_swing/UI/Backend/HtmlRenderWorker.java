@@ -0,0 +1,116 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import sh.tze.gw_swing.UI.MainWindowView;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.html.HTMLDocument;
+import javax.swing.text.html.HTMLEditorKit;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Renders sentences [from, to) into the html display without holding the EDT.
+ * The markup is built here in chunks of {@link #CHUNK_SIZE} sentences. In replace mode the first chunk is
+ * parsed into a fresh HTMLDocument off the EDT and installed as soon as it is ready; every later chunk is
+ * appended on the EDT, which then only parses CHUNK_SIZE sentences at a time.
+ * Cancelling (a new filter, a reset, another corpus) drops every chunk not yet shown.
+ */
+class HtmlRenderWorker extends SwingWorker<Void, HtmlRenderWorker.Chunk> {
+
+    static final int CHUNK_SIZE = 200;
+    static final String HEADER = "<html><body style=\"white-space: nowrap;\">";
+    static final String FOOTER = "</body></html>";
+
+    // either a whole new document (first chunk in replace mode) or markup to append
+    record Chunk(HTMLDocument document, String html, int rendered) {
+    }
+
+    private final MainWindowView view;
+    private final int from, to;
+    private final IntFunction<String> fragment;
+    private final boolean replace;
+    private final Runnable onFinished;
+
+    /**
+     * @param fragment   markup of sentence i; called on the worker thread, so it must only read immutable data
+     * @param replace    start a new document instead of appending to the one shown
+     * @param onFinished run on the EDT after the last chunk is shown; not run when cancelled
+     */
+    HtmlRenderWorker(MainWindowView view, int from, int to, IntFunction<String> fragment, boolean replace, Runnable onFinished) {
+        this.view = view;
+        this.from = from;
+        this.to = to;
+        this.fragment = fragment;
+        this.replace = replace;
+        this.onFinished = onFinished;
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        boolean first = replace;
+        int i = from;
+        do {
+            int end = Math.min(i + CHUNK_SIZE, to);
+            StringBuilder sb = new StringBuilder();
+            for (int j = i; j < end; j++) {
+                if (isCancelled()) return null;
+                sb.append(fragment.apply(j));
+            }
+            if (first) {
+                publish(new Chunk(parse(HEADER + sb + FOOTER), null, end - from));
+                first = false;
+            } else if (sb.length() > 0) {
+                publish(new Chunk(null, sb.toString(), end - from));
+            }
+            i = end;
+        } while (i < to && !isCancelled());
+        return null;
+    }
+
+    // the document is not attached to any component yet, so building it here is fine
+    private static HTMLDocument parse(String html) throws IOException, BadLocationException {
+        HTMLEditorKit kit = new HTMLEditorKit();
+        HTMLDocument doc = (HTMLDocument) kit.createDefaultDocument();
+        doc.putProperty("IgnoreCharsetDirective", Boolean.TRUE);
+        kit.read(new StringReader(html), doc, 0);
+        return doc;
+    }
+
+    @Override
+    protected void process(List<Chunk> chunks) {
+        if (isCancelled()) return;
+        var panel = view.getTextDisplayPanel();
+        for (Chunk c : chunks) {
+            if (c.document() != null) {
+                panel.setDocument(c.document());
+            } else {
+                panel.appendHTML(c.html());
+            }
+        }
+        int total = to - from;
+        int rendered = chunks.get(chunks.size() - 1).rendered();
+        if (rendered < total) {
+            view.getStatusLabel().setText("Rendering " + rendered + " / " + total + " sentences");
+            view.getProgressBar().setMaximum(total);
+            view.getProgressBar().setValue(rendered);
+            view.getProgressBar().setVisible(true);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) return; // whoever cancelled owns the status bar now
+        view.getProgressBar().setVisible(false);
+        view.getStatusLabel().setText(" ");
+        try {
+            get();
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(view.getTextDisplayPanel(), "Failed to render: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (onFinished != null) onFinished.run();
+    }
+}
@@ -1,12 +1,13 @@
 package sh.tze.gw_swing.UI.Backend;
 
-import com.lexparser.scraper.WikipediaScraper;
 import com.lexparser.scraper.nlp.AnnotatedToken;
+import com.lexparser.scraper.nlp.AnnotationCache;
+import com.lexparser.scraper.nlp.CorpusFile;
 import com.lexparser.scraper.nlp.NLPProcessing;
-import sh.tze.gw_swing.UI.Backend.DataRepresentation.PresentableWord;
-import sh.tze.gw_swing.UI.Backend.DataRepresentation.Word;
 import sh.tze.gw_swing.UI.Backend.File.IOWrapper;
 import sh.tze.gw_swing.UI.MainWindowView;
+import sh.tze.gw_swing.UI.Widgets.SentenceListView;
+import sh.tze.gw_swing.UI.Widgets.TextDisplayPanel;
 
 import com.lexparser.scraper.nlp.SearchResult;
 
@@ -17,6 +18,7 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Flow;
 import java.util.stream.Collectors;
 
 
@@ -26,7 +28,15 @@ public class MainWindowBackend {
 
     private String corpus;
     private boolean isCorpusNewlyInstalled;
-    private NLPProcessing nlpres;
+    private volatile NLPProcessing nlpres; // also read by the suggestion worker
+    private final AnnotationCache annotationCache = AnnotationCache.getDefault();
+    private final CorpusLoader loader = new CorpusLoader(annotationCache, this::onCorpusLoaded, this::onCorpusLoadFailed, this::onLoadQueueChanged);
+    private NLPProcessing prepared; // handed over by the loader, picked up by the next onCorpusChange
+    private BulkImporter importer; // the running bulk import, if any
+    private DumpImporter dumpImporter; // the running dump import, if any
+    private XMLImporter xmlImporter; // the running import of an xml export, if any
+    private final List<String> importFailures = new ArrayList<>();
+    private ExportWorker exporter; // the running export, if any
 
     private final List<String> urlHistory = new ArrayList<>();
     // L<L<AT>> as a document. NLPProcessing contains a L<L<AT>>. L<L<L<AT>>> as set of document
@@ -37,9 +47,18 @@ public class MainWindowBackend {
     // to align corpushist with schemehist what about using dictionary
     private final HashMap<NLPProcessing,List<FilterScheme>> schemeHistory = new HashMap<>(); // updated is aligned with `corpusHistory`
     private final List<FilterScheme> currentSchemeHistory = new ArrayList<>(); // to recreate the search results
+    private final HashMap<NLPProcessing,String> loadDates = new HashMap<>(); // ISO-8601, saved with the corpus
 
     private boolean f_first; // although just realized it is possible to use isCorpusNewlyInstalled to lock schemeHistory, but iCNI is hooked rather weirdly(my bad) so use a dedicated one.
     private boolean f_validScheme;
+
+    // what the text panel currently shows unfiltered, so streamed batches know whether to append
+    private NLPProcessing displayed;
+    private int displayedSentences;
+    private SentenceListView.CorpusModel displayedModel; // virtualized mode: the model streamed batches grow
+    private FilterScheme shownScheme; // null while the unfiltered corpus is shown; lets a mode switch re-present
+    private HtmlRenderWorker renderWorker; // html mode: the render still filling the panel, if any
+    private final FragmentCache fragments = new FragmentCache(); // rendered sentences, shared by every html view
     public MainWindowBackend(MainWindowView view) {
         mwView = view;
         this.corpus = "";
@@ -59,7 +78,13 @@ public class MainWindowBackend {
         //throwing out from the processing class is a bit annoying
         var previous = nlpres;
         try{
-            nlpres = new NLPProcessing(getCorpus());
+            // the loader has already looked the text up in the annotation cache and detected sentences on a miss,
+            // off the EDT; tagging runs in the background and is streamed in below
+            String text = getCorpus();
+            // a reopened corpus file comes without text, it is read from the file
+            var ready = prepared != null && (text == null || text.equals(prepared.getText())) ? prepared : null;
+            prepared = null;
+            nlpres = ready != null ? ready : NLPProcessing.streaming(text, NLPProcessing.ProcessingMode.parallel);
 
             // Only save schemes if there was a previous corpus AND current schemes exist
             if(previous != null && !currentSchemeHistory.isEmpty()){
@@ -77,6 +102,10 @@ public class MainWindowBackend {
         doConversion();
         present(); // only 10ms. modern microarchitecture. wow.
         updateURLPaneOnCorpusChange();
+        if(!nlpres.getCompletion().isDone()){ // freshly annotating, i.e. not a cache hit
+            streamIntoDisplay(nlpres);
+            nlpres.getCompletion().thenAccept(annotationCache::putAsync);
+        }
         //.setText(corpus) so it doesn't consume the flag. Sounds like working on tensor.data to avoid recording grad_fn  <no more relevant>
     }
     public void onFilterClicked(){
@@ -94,7 +123,7 @@ public class MainWindowBackend {
         updateFilterSchemePaneOnNewScheme();
     }
     public void onResetClicked(){
-        if(corpus == null || nlpres == null ){
+        if(nlpres == null){
             return;
         }
         present();
@@ -108,76 +137,123 @@ public class MainWindowBackend {
 
      */
     public void onSaveClicked(File file){
-        if(corpus == null || nlpres == null ){
+        if(nlpres == null){
             JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "No corpus loaded or processed.", "Error", JOptionPane.ERROR_MESSAGE);
         }
+        if(isExporting()){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), exporter.isStopping() ? "The last export is still stopping."
+                    : "An export is already running.", "Save", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         // ITERATE OVER HISTORY CHAIN
         // URL -> CorpusHistory -> FilterSchemeHistory
         // **almost forgot currentSchemeHistory**
         // and then apply filterScheme to their own corpus
-        try {
-            // Maps to store all results
-            Map<String, List<List<SearchResult>>> urlToResultsMap = new HashMap<>();
-            Map<String, String> urlToDateMap = new HashMap<>();
-            Map<String, String> urlToFilterSchemeMap = new HashMap<>();
-
-            // First add current filter scheme results if it exists
-            if (!currentSchemeHistory.isEmpty()) {
-                FilterScheme currentScheme = currentSchemeHistory.get(currentSchemeHistory.size() - 1);
-                List<List<SearchResult>> results = doFilter(currentScheme);
-
-                if (!results.isEmpty() && !urlHistory.isEmpty()) {
-                    String url = urlHistory.get(urlHistory.size() - 1);
-                    urlToResultsMap.put(url, results);
-                    urlToDateMap.put(url, ""); // No date available
-                    urlToFilterSchemeMap.put(url, currentScheme.toStringAsListEntry());
-                }
-            }
-            for (int i = 0; i < urlHistory.size(); i++) {
-                String url = urlHistory.get(i);
-                NLPProcessing atCorpus = corpusHistory.get(url);
-
-                if (atCorpus != null) {
-                    List<FilterScheme> filterSchemes = schemeHistory.get(atCorpus);
-
-                    if (filterSchemes != null && !filterSchemes.isEmpty()) {
-                        for (FilterScheme scheme : filterSchemes) {
-                            // Temporarily set nlpres to the historical corpus to filter correctly
-                            NLPProcessing tempNlpres = nlpres;
-                            nlpres = atCorpus;
-                            List<List<SearchResult>> results = doFilter(scheme);
-                            nlpres = tempNlpres; // Restore current nlpres
-
-                            if (!results.isEmpty()) {
-                                // If this URL is already in the map, append results
-                                if (urlToResultsMap.containsKey(url)) {
-                                    urlToResultsMap.get(url).addAll(results);
-                                } else {
-                                    urlToResultsMap.put(url, results);
-                                }
-
-                                urlToDateMap.put(url, ""); // No date available
-                                urlToFilterSchemeMap.put(url, scheme.toStringAsListEntry());
-                            }
-                        }
-                    }
-                }
+        // every (url, scheme) with hits becomes one document. the histories are snapshotted here on the EDT, the
+        // filtering and writing happen on the export worker, so the file is what was there when save was clicked
+        var run = new ExportWorker(file, new ExportListener(file));
+        // First the current filter scheme, if it exists
+        if (!currentSchemeHistory.isEmpty() && !urlHistory.isEmpty() && nlpres != null) {
+            run.add(urlHistory.get(urlHistory.size() - 1), nlpres, currentSchemeHistory.get(currentSchemeHistory.size() - 1));
+        }
+        for (String url : new LinkedHashSet<>(urlHistory)) { // a repeated url maps to the same corpus
+            NLPProcessing atCorpus = corpusHistory.get(url);
+            if (atCorpus == null) continue;
+            List<FilterScheme> filterSchemes = schemeHistory.get(atCorpus);
+            if (filterSchemes == null) continue;
+            for (FilterScheme scheme : filterSchemes) {
+                run.add(url, atCorpus, scheme);
             }
-            if (!urlToResultsMap.isEmpty()) {
-                IOWrapper.saveMultipleSearchResultsToXML(
-                        urlToResultsMap, urlToDateMap, urlToFilterSchemeMap,
-                        file.getAbsolutePath());
+        }
+        if(run.isEmpty()){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(),
+                    "No search results to save.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        exporter = run;
+        mwView.getStatusLabel().setText("Exporting to " + file.getName());
+        var bar = mwView.getProgressBar();
+        bar.setIndeterminate(false);
+        bar.setMaximum(run.size());
+        bar.setValue(0);
+        bar.setVisible(true);
+        mwView.getCancelLoadButton().setEnabled(true);
+        run.execute();
+    }
+
+    // until the worker has reported back, which a stopped one only does once its thread has returned
+    private boolean isExporting(){
+        return exporter != null;
+    }
+
+    private class ExportListener implements ExportWorker.Listener {
+        private final File file;
+
+        ExportListener(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void onProgress(int written, int total) {
+            mwView.getProgressBar().setValue(written);
+            mwView.getStatusLabel().setText("Exporting to " + file.getName() + " (" + written + "/" + total + ")");
+        }
 
+        @Override
+        public void onFinished(int documents, Exception failure, boolean cancelled) {
+            exporter = null;
+            onLoadQueueChanged(); // hands the status bar back
+            if(cancelled){
+                if(loader.pending().isEmpty() && !isImporting()) mwView.getStatusLabel().setText("Export cancelled");
+                return;
+            }
+            if(failure != null){
+                JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "Failed to save: " + failure.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            } else if (documents > 0) {
                 JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(),
                         "Saved successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
             } else {
                 JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(),
                         "No search results to save.", "Warning", JOptionPane.WARNING_MESSAGE);
             }
-        } catch (Exception e){
-            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "Failed to save: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
+    // the corpus shown, with its url, load date and every filter scheme recorded for it. reopened through Open
+    public void onSaveCorpusClicked(File file){
+        if(nlpres == null){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "No corpus loaded or processed.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if(!nlpres.isComplete()){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "The corpus is still being annotated, save it once it is done.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        var target = nlpres;
+        String url = null;
+        for(String u : urlHistory){
+            if(corpusHistory.get(u) == target) url = u; // the latest url it was opened from
+        }
+        List<String> schemes = new ArrayList<>();
+        schemeHistory.getOrDefault(target, List.of()).forEach(fs -> schemes.add(fs.toStringAsListEntry()));
+        currentSchemeHistory.forEach(fs -> schemes.add(fs.toStringAsListEntry()));
+        var metadata = new CorpusFile.Metadata(url, loadDates.get(target), schemes);
+        var path = CorpusFile.isCorpusFile(file.getName()) ? file.toPath() : file.toPath().resolveSibling(file.getName() + CorpusFile.SUFFIX);
+        java.util.concurrent.CompletableFuture.runAsync(() -> {
+            try {
+                CorpusFile.write(path, target, metadata);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }).whenComplete((ok, failure) -> SwingUtilities.invokeLater(() -> {
+            if(failure == null){
+                JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(),
+                        "Saved to " + path.getFileName() + ".", "Success", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            var cause = failure.getCause() instanceof java.io.UncheckedIOException u ? u.getCause() : failure.getCause();
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "Failed to save: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }));
+    }
     public void onURLListEntryActivated(){
         var corpusHistoryList = mwView.getUrlHistoryList();
         var listModel = mwView.getUrlHistoryListModel();
@@ -260,30 +336,125 @@ public class MainWindowBackend {
         }else{
             corpusHistory.put(urlHistory.get(urlHistory.size()-1),nlpres);
         }
+        loadDates.putIfAbsent(nlpres, java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+    }
 
-        var doc = nlpres.getWordSentences();
-        List<List<PresentableWord>> w = new ArrayList<>(doc.size());
-        for(var sentence : doc){
-            List<PresentableWord> ws = new ArrayList<>(sentence.size());
-            for(var word : sentence){
-                ws.add(new PresentableWord(Word.fromAnnotatedToken(word)));
-            }
-            w.add(ws);
+
+
+    // profiling shows the big-eater is still opennlp. good news.
+    private void present(){
+        shownScheme = null;
+        cancelRender();
+        var panel = mwView.getTextDisplayPanel();
+        if(panel.getDisplayMode() == TextDisplayPanel.DisplayMode.virtualized){
+            // rows are read from the corpus as they scroll into view, nothing to build here
+            displayedModel = new SentenceListView.CorpusModel(nlpres);
+            panel.showSentences(displayedModel);
+            displayed = nlpres;
+            displayedSentences = displayedModel.getSize();
+            return;
+        }
+        displayedModel = null;
+        var source = nlpres;
+        var doc = source.getWordSentences(); // annotated prefix if the corpus is still streaming in
+        displayed = source;
+        displayedSentences = doc.size();
+        // built off the EDT in chunks, first chunk shows up right away
+        renderWorker = new HtmlRenderWorker(mwView, 0, displayedSentences, i -> parseSentence(source, doc.get(i), -1), true,
+                () -> catchUpDisplay(source));
+        renderWorker.execute();
+    }
+
+    // sentences streamed in while a render was running were held back; append them now
+    private void catchUpDisplay(NLPProcessing source){
+        renderWorker = null;
+        if(displayed != source) return;
+        var doc = source.getWordSentences();
+        int from = displayedSentences;
+        if(doc.size() <= from) return;
+        displayedSentences = doc.size();
+        renderWorker = new HtmlRenderWorker(mwView, from, displayedSentences, i -> parseSentence(source, doc.get(i), -1), false,
+                () -> catchUpDisplay(source));
+        renderWorker.execute();
+    }
+
+    private void cancelRender(){
+        if(renderWorker != null){
+            renderWorker.cancel(true);
+            renderWorker = null;
+            mwView.getProgressBar().setVisible(false);
+            mwView.getStatusLabel().setText(" ");
         }
+    }
 
+    // flips the text panel between html and virtualized rendering and shows the same content again
+    public void onDisplayModeChanged(TextDisplayPanel.DisplayMode mode){
+        var panel = mwView.getTextDisplayPanel();
+        if(panel.getDisplayMode() == mode) return;
+        panel.setDisplayMode(mode);
+        if(nlpres == null) return;
+        if(shownScheme == null){
+            present();
+        }else{
+            presentFiltering(shownScheme);
+        }
     }
 
+    // Subscribes the unfiltered view to the annotation stream, then starts tagging.
+    // Batches land on the EDT and are appended only while that corpus is still shown unfiltered.
+    private void streamIntoDisplay(NLPProcessing source){
+        source.publisher().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
 
+            @Override
+            public void onNext(NLPProcessing.SentenceBatch batch) {
+                SwingUtilities.invokeLater(() -> onBatchAnnotated(source, batch));
+            }
 
-    // profiling shows the big-eater is still opennlp. good news.
-    private void present(){
+            @Override
+            public void onError(Throwable throwable) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(),
+                        "Annotation failed: " + throwable.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        source.start();
+    }
+
+    private void onBatchAnnotated(NLPProcessing source, NLPProcessing.SentenceBatch batch){
+        if(source == nlpres && loader.pending().isEmpty()){ // a queued load owns the status bar otherwise
+            int total = source.getSentences().length;
+            int done = batch.from() + batch.sentences().size();
+            var bar = mwView.getProgressBar();
+            bar.setIndeterminate(false);
+            bar.setMaximum(total);
+            bar.setValue(done);
+            bar.setVisible(!batch.last());
+            mwView.getStatusLabel().setText(batch.last() ? "Annotated " + total + " sentences, indexing done in the background"
+                    : "Annotating " + done + " / " + total + " sentences");
+        }
+        if(displayed != source) return; // user moved on (filtered or switched corpus)
+        if(renderWorker != null) return; // a render is still filling the panel, it catches up when done
+        var sentences = batch.sentences();
+        int skip = displayedSentences - batch.from(); // present() may already have rendered part of this batch
+        if(skip >= sentences.size()) return;
+        if(displayedModel != null){
+            displayedModel.grow(batch.from() + sentences.size()); // rows read from the corpus, which already holds them
+            displayedSentences = batch.from() + sentences.size();
+            return;
+        }
         StringBuilder sb = new StringBuilder();
-        sb.append("<html><body style=\"white-space: nowrap;\">");
-        for(int i = 0; i < nlpres.getWordSentences().size(); i++){
-            sb.append(parseSentence(nlpres.getWordSentences().get(i)));
+        for(int i = Math.max(skip, 0); i < sentences.size(); i++){
+            sb.append(parseSentence(source, sentences.get(i), -1));
         }
-        sb.append("</body></html>");
-        mwView.getTextDisplayPanel().setText(sb.toString());
+        mwView.getTextDisplayPanel().appendHTML(sb.toString());
+        displayedSentences = batch.from() + sentences.size();
     }
 
     @Deprecated
@@ -305,17 +476,39 @@ public class MainWindowBackend {
         mwView.getTextDisplayPanel().setText(sb.toString());
     }
     private void presentFiltering(FilterScheme fs){
+        displayed = null;
+        displayedModel = null;
+        shownScheme = fs;
+        cancelRender();
         List<List<SearchResult>> results = doFilter(fs);
-        StringBuilder sb = new StringBuilder();
-        sb.append("<html><body style=\"white-space: nowrap;\">");
+        var panel = mwView.getTextDisplayPanel();
+        if(panel.getDisplayMode() == TextDisplayPanel.DisplayMode.virtualized){
+            panel.showSentences(new SentenceListView.ResultModel(results));
+            return;
+        }
+        List<SearchResult> occurrences = new ArrayList<>();
         for(var identity : results){
-            for(var occurrence : identity){
-                sb.append(parseSentence(occurrence));
-            }
+            occurrences.addAll(identity);
         }
-        sb.append("</body></html>");
-        mwView.getTextDisplayPanel().setText(sb.toString());
+        var owner = nlpres;
+        renderWorker = new HtmlRenderWorker(mwView, 0, occurrences.size(),
+                i -> parseSentence(owner, occurrences.get(i).getSentence(), occurrences.get(i).getIndex()), true,
+                () -> renderWorker = null);
+        renderWorker.execute();
+    }
+    // called from the model loader thread
+    public void onModelLoadProgress(String stage, int done, int total){
+        SwingUtilities.invokeLater(() -> {
+            var label = mwView.getStatusLabel();
+            var bar = mwView.getProgressBar();
+            if(label == null || bar == null) return;
+            label.setText(stage);
+            bar.setMaximum(total);
+            bar.setValue(done);
+            bar.setVisible(done < total);
+        });
     }
+
     public void addPropertyChangeListener(PropertyChangeListener listener) {
         pcs.addPropertyChangeListener(listener);
     }
@@ -328,7 +521,12 @@ public class MainWindowBackend {
         return corpus;
     }
 
+    // text from elsewhere goes through the loader too, so the cache lookup (hash, disk read) stays off the EDT
     public void setCorpusWithURL(String corpus, String url) {
+        loader.submitText(url, corpus);
+    }
+
+    private void installCorpus(String corpus, String url) {
         String oldCorpus = this.corpus;
         this.corpus = corpus;
         isCorpusNewlyInstalled = true;
@@ -359,53 +557,335 @@ public class MainWindowBackend {
     private static final String LocalPolicy = "^(/|(/(.+))+$)"; //forgot about unicode chars
 
     //https://developer.mozilla.org/en-US/docs/Learn_web_development/Howto/Web_mechanics/What_is_a_URL
+    // only validates here; fetching, cleaning and sentence detection are queued on the loader, off the EDT
     public void dispatchURL(String url) { // oof, debate over whether to lazy-load content
         if(url.matches(RemotePolicy)) {
-            setCorpusWithURL(WikipediaScraper.scrapeContent(url),url);
+            loader.submit(url, true);
         }
         else if(url.matches(LocalPolicy)){ // Sorry but only '/' as path separator is allowed, bye NT/Win32, welcome POSIX
-            try {
-                setCorpusWithURL(java.nio.file.Files.readString(java.nio.file.Path.of(url)),url);
-            } catch (java.io.IOException ex) { // sad to emit an orphan dialog
-                JOptionPane.showMessageDialog(null, "Failed to read file: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            loader.submit(url, false);
         } else if (url.matches(".*" + FQDNShapedPolicy)) {
             JOptionPane.showMessageDialog(null, "Malformed input that looks like an URL. Are you missing the url scheme?", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    public void onCancelLoadsClicked(){
+        if(isImporting()){
+            if(importer != null) importer.cancel();
+            if(dumpImporter != null) dumpImporter.cancel();
+            if(xmlImporter != null) xmlImporter.cancel();
+            importer = null;
+            dumpImporter = null;
+            xmlImporter = null;
+            mwView.getStatusLabel().setText("Import cancelled");
+        }
+        if(isExporting() && !exporter.isStopping()){
+            exporter.stop(); // stops before the next document, the target stays as it was; still running until then
+            mwView.getStatusLabel().setText("Cancelling export");
+        }
+        loader.cancelAll();
+    }
+
+    //<editor-fold desc="Bulk import">
+    // spec: a directory, a glob or a file listing urls/paths; expanded off the EDT, then imported in the background.
+    // a wikipedia xml dump (.xml, .xml.bz2, .xml.gz) goes to the dump importer instead, one of our own xml exports
+    // is read back as it is
+    public void onImportRequested(String spec){
+        if(isImporting()){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "An import is already running.", "Import", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if(IOWrapper.isExport(spec)){
+            onExportImportRequested(spec);
+            return;
+        }
+        if(DumpImporter.isDump(spec)){
+            onDumpImportRequested(spec);
+            return;
+        }
+        var run = new BulkImporter(annotationCache, new ImportListener());
+        importer = run;
+        importFailures.clear();
+        mwView.getStatusLabel().setText("Collecting " + spec);
+        onLoadQueueChanged();
+        java.util.concurrent.CompletableFuture.supplyAsync(() -> {
+            try {
+                return BulkImporter.expand(spec);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }).whenComplete((sources, failure) -> SwingUtilities.invokeLater(() -> {
+            if(importer != run) return; // cancelled while listing
+            if(failure != null){
+                importer = null;
+                onLoadQueueChanged();
+                var cause = failure.getCause() instanceof java.io.UncheckedIOException u ? u.getCause() : failure.getCause();
+                JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "Cannot import " + spec + ": " + cause, "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            run.start(sources);
+        }));
+    }
+
+    private boolean isImporting(){
+        return (importer != null && !importer.isCancelled()) || (dumpImporter != null && !dumpImporter.isCancelled())
+                || (xmlImporter != null && !xmlImporter.isCancelled());
+    }
+
+    // annotations, urls and filter schemes come straight out of the file, no model involved
+    private void onExportImportRequested(String spec){
+        var run = new XMLImporter(new XMLImportListener());
+        xmlImporter = run;
+        importFailures.clear();
+        mwView.getStatusLabel().setText("Reading " + spec);
+        var bar = mwView.getProgressBar();
+        bar.setIndeterminate(true);
+        bar.setVisible(true);
+        onLoadQueueChanged();
+        run.start(spec);
+    }
+
+    // asks which articles to take, then streams them out of the dump; every imported article stays in memory,
+    // so there is always a limit, see DumpImporter.maxArticles
+    private void onDumpImportRequested(String spec){
+        var dump = java.nio.file.Path.of(spec);
+        if(!java.nio.file.Files.isRegularFile(dump)){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "No such dump: " + spec, "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        var titleField = new JTextField(20);
+        int max = DumpImporter.maxArticles();
+        var limitField = new JTextField(String.valueOf(Math.min(1000, max)), 8);
+        var form = new JPanel(new java.awt.GridLayout(2, 2, 5, 5));
+        form.add(new JLabel("Title pattern (regex, empty for all):"));
+        form.add(titleField);
+        form.add(new JLabel("At most this many articles (1 to " + max + "):"));
+        form.add(limitField);
+        if(JOptionPane.showConfirmDialog(mwView.getTextDisplayPanel(), form, "Import " + dump.getFileName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+        java.util.regex.Pattern titles = null;
+        int limit;
+        try {
+            if(!titleField.getText().isBlank()) titles = java.util.regex.Pattern.compile(titleField.getText().trim());
+            limit = Integer.parseInt(limitField.getText().trim());
+        } catch (java.util.regex.PatternSyntaxException | NumberFormatException e){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "Invalid import options: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if(limit < 1 || limit > max){
+            JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), "Import between 1 and " + max + " articles at a time"
+                    + " (-D" + DumpImporter.MAX_ARTICLES_PROPERTY + " raises the limit, and the memory it takes).", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        var run = new DumpImporter(annotationCache, new DumpImportListener(limit));
+        dumpImporter = run;
+        importFailures.clear();
+        mwView.getStatusLabel().setText("Reading " + dump.getFileName());
+        var bar = mwView.getProgressBar();
+        bar.setIndeterminate(false);
+        bar.setMaximum(limit);
+        bar.setValue(0);
+        bar.setVisible(true);
+        onLoadQueueChanged();
+        run.start(dump, titles, limit);
+    }
+
+    // registers a finished document into the histories; the first one becomes current if nothing is shown yet
+    private void registerImported(String url, NLPProcessing processed){
+        f_first = false; // corpusHistory is keyed by url from now on, see doConversion
+        urlHistory.add(url);
+        corpusHistory.put(url, processed);
+        loadDates.putIfAbsent(processed, java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        var listModel = mwView.getUrlHistoryListModel();
+        listModel.addElement(url);
+        if(nlpres == null){
+            nlpres = processed;
+            corpus = processed.getText();
+            mwView.getUrlHistoryList().setSelectedIndex(listModel.getSize() - 1);
+            present();
+        }
+    }
+
+    private void showImportFailures(){
+        if(importFailures.isEmpty()) return;
+        int shown = Math.min(importFailures.size(), 10);
+        String msg = String.join("\n", importFailures.subList(0, shown))
+                + (importFailures.size() > shown ? "\n... and " + (importFailures.size() - shown) + " more" : "");
+        JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), msg, "Some documents failed to import", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private class ImportListener implements BulkImporter.Listener {
+        @Override
+        public void onImported(String url, NLPProcessing processed) {
+            registerImported(url, processed);
+        }
+
+        @Override
+        public void onFailed(String url, Exception cause) {
+            importFailures.add(url + ": " + (cause.getMessage() != null ? cause.getMessage() : cause));
+        }
+
+        @Override
+        public void onProgress(int done, int failed, int total, boolean finished) {
+            var bar = mwView.getProgressBar();
+            bar.setIndeterminate(false);
+            bar.setMaximum(Math.max(total, 1));
+            bar.setValue(done + failed);
+            bar.setVisible(!finished);
+            mwView.getStatusLabel().setText((finished ? "Imported " : "Importing ") + done + " / " + total
+                    + (failed > 0 ? " (" + failed + " failed)" : ""));
+            if(!finished) return;
+            importer = null;
+            mwView.getCancelLoadButton().setEnabled(!loader.pending().isEmpty() || isExporting());
+            showImportFailures();
+        }
+    }
+
+    private class XMLImportListener implements XMLImporter.Listener {
+        @Override
+        public void onImported(String url, NLPProcessing processed, List<String> filterSchemes) {
+            registerImported(url, processed);
+            restoreSchemes(processed, filterSchemes);
+        }
+
+        @Override
+        public void onFailed(String source, Exception cause) {
+            // the importer drops whatever it had read of the file
+            importFailures.add(source + ": " + (cause.getMessage() != null ? cause.getMessage() : cause) + ", nothing imported");
+        }
+
+        @Override
+        public void onProgress(int documents, int corpora, boolean finished) {
+            mwView.getProgressBar().setVisible(!finished);
+            mwView.getStatusLabel().setText((finished ? "Imported " : "Reading, ") + documents + " documents"
+                    + (finished ? " into " + corpora + " corpora" : ""));
+            if(!finished) return;
+            xmlImporter = null;
+            mwView.getCancelLoadButton().setEnabled(!loader.pending().isEmpty() || isExporting());
+            showImportFailures();
+        }
+    }
+
+    private class DumpImportListener implements DumpImporter.Listener {
+        private final int limit;
+
+        DumpImportListener(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onImported(String url, NLPProcessing processed) {
+            registerImported(url, processed);
+        }
+
+        @Override
+        public void onFailed(String url, Exception cause) {
+            importFailures.add(url + ": " + (cause.getMessage() != null ? cause.getMessage() : cause));
+        }
+
+        @Override
+        public void onProgress(int done, int failed, long pagesSeen, double perSecond, boolean finished) {
+            var bar = mwView.getProgressBar();
+            bar.setIndeterminate(false);
+            bar.setMaximum(limit);
+            bar.setValue(done + failed);
+            bar.setVisible(!finished);
+            mwView.getStatusLabel().setText(String.format("%s %d articles (%d pages read, %.1f articles/s)%s",
+                    finished ? "Imported" : "Importing", done, pagesSeen, perSecond,
+                    failed > 0 ? ", " + failed + " failed" : ""));
+            if(!finished) return;
+            dumpImporter = null;
+            mwView.getCancelLoadButton().setEnabled(!loader.pending().isEmpty() || isExporting());
+            showImportFailures();
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Loader callbacks, all on the EDT">
+    private void onCorpusLoaded(CorpusLoader.Loaded loaded){
+        prepared = loaded.prepared();
+        installCorpus(loaded.text(), loaded.url());
+        if(loaded.saved() != null) restoreSaved(loaded.saved());
+    }
+
+    // a reopened corpus file brings its load date and filter schemes back
+    private void restoreSaved(CorpusFile.Metadata saved){
+        if(saved.loadDate() != null) loadDates.put(nlpres, saved.loadDate());
+        restoreSchemes(nlpres, saved.filterSchemes());
+    }
+
+    // filter schemes saved as list entries go back into the corpus' history, and into the pane if it is shown
+    private void restoreSchemes(NLPProcessing target, List<String> entries){
+        List<FilterScheme> schemes = new ArrayList<>();
+        for(String entry : entries){
+            FilterScheme fs = fromStringAsListEntry(entry);
+            if(!fs.isInvalid()) schemes.add(fs);
+        }
+        if(schemes.isEmpty()) return;
+        schemeHistory.computeIfAbsent(target, k -> new ArrayList<>()).addAll(schemes);
+        if(target != nlpres) return; // shown once its url is picked, see onURLListEntryActivated
+        var listModel = mwView.getFilterSchemeHistoryListModel();
+        schemes.forEach(fs -> listModel.addElement(fs.toStringAsListEntry()));
+    }
+
+    private void onCorpusLoadFailed(String url, Throwable cause){
+        String msg = cause instanceof java.io.IOException
+                ? "Failed to read " + url + ": " + cause.getMessage()
+                : "Failed to load " + url + ": " + cause;
+        JOptionPane.showMessageDialog(mwView.getTextDisplayPanel(), msg, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void onLoadQueueChanged(){
+        var pending = loader.pending();
+        var label = mwView.getStatusLabel();
+        var bar = mwView.getProgressBar();
+        if(label == null || bar == null || mwView.getCancelLoadButton() == null) return; // still building the view
+        mwView.getCancelLoadButton().setEnabled(!pending.isEmpty() || isImporting() || isExporting());
+        if(pending.isEmpty() && (isImporting() || isExporting())) return; // the import or export owns the status bar
+        if(pending.isEmpty()){
+            bar.setIndeterminate(false);
+            bar.setVisible(false);
+            label.setText(" ");
+            return;
+        }
+        var head = pending.get(0);
+        String stage = switch (head.stage()) {
+            case queued -> "Queued";
+            case fetching -> "Fetching";
+            case cleaning -> "Cleaning";
+            case annotating -> "Detecting sentences in";
+        };
+        label.setText(stage + " " + head.url + (pending.size() > 1 ? " (+" + (pending.size() - 1) + " more)" : ""));
+        bar.setIndeterminate(true);
+        bar.setVisible(true);
+    }
+    //</editor-fold>
+
+    // popup rows; ranked by corpus frequency, so the useful ones are on top anyway
+    private static final int SUGGESTION_LIMIT = 12;
+
     public java.util.List<String> getWFSuggestionFromNLPResult(String input){
-        if (input.isEmpty() || nlpres == null) {
+        var res = nlpres;
+        if (input.isEmpty() || res == null) {
             return null;
         }
-        return nlpres.getTokens().stream()
-                .flatMap(List::stream)
-                .filter(token -> token.startsWith(input))
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
+        return res.completeForm(input, SUGGESTION_LIMIT);
     }
 
     public java.util.List<String> getPOSSuggestionFromNLPResult(String input){
-        if (input.isEmpty() || nlpres == null) {
+        var res = nlpres;
+        if (input.isEmpty() || res == null) {
             return null;
         }
-        // since pos can be 'exhaustively' listed in a simple dict, this is a bit overly performance-hungry
-        return nlpres.getPosTags().stream()
-                .flatMap(List::stream)
-                .filter(token -> token.startsWith(input))
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
+        return res.completePos(input, SUGGESTION_LIMIT);
     }
 
     public java.util.List<String> getLemmaSuggestionFromNLPResult(String input){
-        if (input.isEmpty() || nlpres == null) {
+        var res = nlpres;
+        if (input.isEmpty() || res == null) {
             return null;
         }
-        return nlpres.getLemmas().stream()
-                .flatMap(List::stream)
-                .filter(token -> token.startsWith(input))
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
+        return res.completeLemma(input, SUGGESTION_LIMIT);
     }
 
     enum FilterRangeSchemeEnum { // standardise naming since no longer a thought-of internal usage
@@ -473,6 +953,11 @@ public class MainWindowBackend {
 
     //TODO: preserve sentence order in filtered results
     public List<List<SearchResult>> doFilter(FilterScheme fs){
+        return doFilter(nlpres, fs);
+    }
+
+    // pure: reads the given corpus only, so it can run off the EDT and on any corpus of the history
+    static List<List<SearchResult>> doFilter(NLPProcessing nlpres, FilterScheme fs){
         /*
             precedence seems fine, you have f(g(x)) = g(f(x))
             3 pass filtering
@@ -486,72 +971,25 @@ public class MainWindowBackend {
             return new ArrayList<>();
         }
 
-        List<AnnotatedToken> intermediate1 = new ArrayList<>();
-        //**culprit found** the original return should be a Word of dimension RxR.
-        // this was intended to be a catch-all(equivalent '.*') but i forgot this would make the return now to be RxRxR (of big-enough AnnotatedToken instance)
-        // indeed supernova explosion on the dimension
-        if(!fs.isInvalid()){
-            // pass 1 to collect hit from corpus with the highest,
-            // also must handle case-specificity here, otherwise words of diff. cases will be collected and contaminate the intermediate set
-            if (!fs.wf().isBlank()) {
-                for (var s : nlpres.getWordSentences()) {
-                    for (var w : s) {
-                        boolean matches = fs.caseSensitive() ?
-                                fs.wf().equals(w.getForm()) :
-                                fs.wf().equalsIgnoreCase(w.getForm());
-                        if (matches) intermediate1.add(w);
-                    }
-                }
-            } else if (!fs.lemma().isBlank()) {
-                for (var s : nlpres.getWordSentences()) {
-                    for (var w : s) {
-                        boolean matches = fs.caseSensitive() ?
-                                fs.lemma().equals(w.getLemma()) :
-                                fs.lemma().equalsIgnoreCase(w.getLemma());
-                        if (matches) intermediate1.add(w);
-                    }
-                }
-            } else if (!fs.pos().isBlank()) {
-                for (var s : nlpres.getWordSentences()) {
-                    for (var w : s) {
-                        if (fs.pos().equals(w.getPos())) intermediate1.add(w);
-                    }
-                }
-            } else {
-                return new ArrayList<>(); //alright i don't know what im thinking
-            }
-        }
         // **solved here**, and also by adding forward validator
-//        else intermediate1 = nlpres.getWordSentences().stream().flatMap(List::stream).collect(Collectors.toList());
-        else {
+        if(fs.isInvalid()){
             return new ArrayList<>();
         }
 
+        // pass 1 + 2: every token satisfying all keys, in document order.
+        // case-specificity is handled inside, otherwise words of diff. cases will be collected and contaminate the intermediate set.
+        // answered from the inverted index (cost ~ hits of the rarest key) once the corpus is fully annotated
+        int[] matched = nlpres.match(fs.wf(), fs.pos(), fs.lemma(), fs.caseSensitive());
 
-        //pass 2
+        var columns = nlpres.getColumnarCorpus();
         List<AnnotatedToken> intermediate2 = new ArrayList<>();
-        for (var w : intermediate1) {
-                boolean matches = true;
-                if (!fs.wf().isBlank()) {
-                    boolean wfMatch = fs.caseSensitive() ?
-                            fs.wf().equals(w.getForm()) :
-                            fs.wf().equalsIgnoreCase(w.getForm());
-                    matches = matches && wfMatch;
-                }
-                if (!fs.lemma().isBlank()) {
-                    boolean lemmaMatch = fs.caseSensitive() ?
-                            fs.lemma().equals(w.getLemma()) :
-                            fs.lemma().equalsIgnoreCase(w.getLemma());
-                    matches = matches && lemmaMatch;
-                }
-                if (!fs.pos().isBlank()) {
-                    matches = matches && fs.pos().equals(w.getPos());
-                }
-
-                if (matches) { //** more importantly here: feed from intermediate1 must be de-duplicated
-                    if(!intermediate2.contains(w))
-                        intermediate2.add(w) ;
-                }
+        Set<List<Integer>> seenIdentities = new HashSet<>(); // exact (form, lemma, pos) ids already looked at
+        for (int p : matched) {
+            if(!seenIdentities.add(List.of(columns.formId(p), columns.lemmaId(p), columns.posCode(p)))) continue;
+            var w = columns.token(p);
+            //** more importantly here: feed from intermediate1 must be de-duplicated
+            if(!intermediate2.contains(w))
+                intermediate2.add(w);
         }
 
         // pass 3, range
@@ -587,52 +1025,18 @@ public class MainWindowBackend {
     }
 
     private String parseSentence(List<AnnotatedToken> sentence){
-        StringBuilder sb = new StringBuilder();
-        StringBuilder l1 = new StringBuilder();
-        StringBuilder l2 = new StringBuilder();
-        StringBuilder l3 = new StringBuilder();
-        for(int j = 0; j < sentence.size(); j++){
-            var w = sentence.get(j);
-            l1.append(w.getForm() + " ");
-            l2.append(w.getLemma() + " ");
-            l3.append(w.getPos() + " ");
-        }
-        sb.append(l1);
-        sb.append("<br>");
-        sb.append(l2);
-        sb.append("<br>");
-        sb.append(l3);
-        sb.append("<br>");
-        sb.append("<hr>");
-
-        return sb.toString();
+        return parseSentence(null, sentence, -1);
     }
     private String parseSentence(List<AnnotatedToken> sentence, int boldAt){
-        StringBuilder sb = new StringBuilder();
-        StringBuilder l1 = new StringBuilder();
-        StringBuilder l2 = new StringBuilder();
-        StringBuilder l3 = new StringBuilder();
-        for(int j = 0; j < sentence.size(); j++){
-            var w = sentence.get(j);
-            if(j == boldAt){
-                l1.append("<b>" + w.getForm() + "</b> ");
-                l2.append("<b>" + w.getLemma() + "</b> ");
-                l3.append("<b>" + w.getPos() + "</b> ");
-                continue;
-            }
-            l1.append(w.getForm() + " ");
-            l2.append(w.getLemma() + " ");
-            l3.append(w.getPos() + " ");
-        }
-        sb.append(l1);
-        sb.append("<br>");
-        sb.append(l2);
-        sb.append("<br>");
-        sb.append(l3);
-        sb.append("<br>");
-        sb.append("<hr>");
-
-        return sb.toString();
+        return parseSentence(null, sentence, boldAt);
+    }
+    // sentences and neighbour windows of a corpus are token ranges, their plain html is cached per range;
+    // bolding is spliced into the cached fragment instead of rendering the sentence again
+    private String parseSentence(NLPProcessing owner, List<AnnotatedToken> sentence, int boldAt){
+        if(owner != null && sentence instanceof NLPProcessing.TokenRange<?> range){
+            return fragments.render(owner, range.from(), range.to(), sentence, boldAt);
+        }
+        return fragments.render(null, 0, 0, sentence, boldAt);
     }
     private String parseSentence(SearchResult sr){
         return parseSentence(sr.getSentence(),sr.getIndex());
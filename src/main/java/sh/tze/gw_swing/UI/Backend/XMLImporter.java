@@ -0,0 +1,153 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import com.lexparser.scraper.nlp.AnnotatedToken;
+import com.lexparser.scraper.nlp.NLPProcessing;
+import sh.tze.gw_swing.UI.Backend.File.IOWrapper;
+import sh.tze.gw_swing.UI.Backend.File.XML;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads one of our own XML exports back (see {@link XML.CorpusReader}), without running any model.
+ * An export holds one document per (url, filter scheme) with the sentences that scheme hit, so the documents of a
+ * url are merged back into one corpus of their distinct sentences, and every scheme goes back into its history.
+ * Documents are streamed into the column store as they are read, one thread, nothing else held besides a hash and an
+ * index per sentence; a hash hit is checked against the stored sentence, so only true duplicates are dropped.
+ * The corpora are handed to the EDT through {@code onImported} once the whole file is read. A file that fails
+ * half way imports nothing, only {@code onFailed} and a finished {@code onProgress} with no corpora are reported.
+ */
+final class XMLImporter {
+
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+
+    // progress of one import, reported on the EDT
+    interface Listener {
+        void onImported(String url, NLPProcessing processed, List<String> filterSchemes);
+        void onFailed(String source, Exception cause);
+        void onProgress(int documents, int corpora, boolean finished);
+    }
+
+    // one url's corpus while it is read
+    private static final class Pending {
+        final NLPProcessing.Builder builder = new NLPProcessing.Builder();
+        // sentence hash -> indices of the added sentences with it, a sentence hit by several schemes is kept once
+        final Map<Long, int[]> seen = new HashMap<>();
+        final List<String> filterSchemes = new ArrayList<>();
+    }
+
+    private final Listener listener;
+    private volatile boolean cancelled;
+    private Thread thread;
+
+    XMLImporter(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts importing in the background and returns immediately. One import at a time per importer.
+     */
+    void start(String file) {
+        thread = new Thread(() -> {
+            Map<String, Pending> corpora = new LinkedHashMap<>();
+            int documents = 0;
+            long lastReport = System.nanoTime();
+            try (XML.CorpusReader reader = IOWrapper.openXML(file)) {
+                XML.Document document;
+                while (!cancelled && (document = reader.next()) != null) {
+                    String url = document.url() != null && !document.url().isBlank() ? document.url() : file;
+                    Pending pending = corpora.computeIfAbsent(url, k -> new Pending());
+                    if (document.filterScheme() != null && !document.filterScheme().isBlank()
+                            && !pending.filterSchemes.contains(document.filterScheme())) {
+                        pending.filterSchemes.add(document.filterScheme());
+                    }
+                    for (List<AnnotatedToken> sentence : document.sentences()) {
+                        if (!sentence.isEmpty() && isNew(pending, sentence)) pending.builder.add(sentence);
+                    }
+                    documents++;
+                    long now = System.nanoTime();
+                    if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        lastReport = now;
+                        int d = documents, c = corpora.size();
+                        post(() -> listener.onProgress(d, c, false));
+                    }
+                }
+            } catch (Exception e) {
+                // what was read so far is some of the sentences of some of the urls; not worth registering as corpora
+                post(() -> listener.onFailed(file, e));
+                int d = documents;
+                post(() -> listener.onProgress(d, 0, true));
+                return;
+            }
+            int imported = 0;
+            for (Map.Entry<String, Pending> entry : corpora.entrySet()) {
+                if (cancelled) return;
+                Pending pending = entry.getValue();
+                if (pending.builder.sentenceCount() == 0) continue;
+                NLPProcessing processed = pending.builder.build();
+                String url = entry.getKey();
+                post(() -> listener.onImported(url, processed, pending.filterSchemes));
+                imported++;
+            }
+            int d = documents, c = imported;
+            post(() -> listener.onProgress(d, c, true));
+        }, "xml-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() { return cancelled; }
+
+    // registers the sentence under its hash unless an equal one already is, which then gets the index it will be added at
+    private static boolean isNew(Pending pending, List<AnnotatedToken> sentence) {
+        long h = hash(sentence);
+        int[] same = pending.seen.get(h);
+        if (same != null) {
+            for (int s : same) {
+                if (pending.builder.sameSentence(s, sentence)) return false;
+            }
+        }
+        int next = pending.builder.sentenceCount();
+        if (same == null) {
+            pending.seen.put(h, new int[]{next});
+        } else {
+            int[] grown = Arrays.copyOf(same, same.length + 1); // a collision, different sentences with one hash
+            grown[same.length] = next;
+            pending.seen.put(h, grown);
+        }
+        return true;
+    }
+
+    // 64 bits over form, pos and lemma of every token; exact, unlike AnnotatedToken.equals
+    private static long hash(List<AnnotatedToken> sentence) {
+        long h = 1125899906842597L;
+        for (AnnotatedToken t : sentence) {
+            h = mix(h, t.getForm());
+            h = mix(h, t.getPos());
+            h = mix(h, t.getLemma());
+        }
+        return h;
+    }
+
+    private static long mix(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return (h ^ (h >>> 29)) * 0xBF58476D1CE4E5B9L + s.length(); // separates the fields
+    }
+
+    private void post(Runnable r) {
+        SwingUtilities.invokeLater(() -> {
+            if (!cancelled) r.run();
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package sh.tze.gw_swing.UI;
 
+import com.lexparser.scraper.nlp.NLPProcessing;
 import sh.tze.gw_swing.UI.Backend.MainWindowBackend;
 import sh.tze.gw_swing.UI.SuggestionAdapter.Decorator;
 import sh.tze.gw_swing.UI.SuggestionAdapter.Provider;
@@ -15,6 +16,7 @@ import java.awt.event.MouseEvent;
 public class MainWindowView {
     private final JPanel mainPanel;
     private JTextField urlTextField;
+    private JButton cancelLoadButton;
     private TextDisplayPanel textDisplayPanel;
 
     private JLabel statusLabel;
@@ -45,6 +47,7 @@ public class MainWindowView {
     public MainWindowView() {
         backend = new MainWindowBackend(this);
         mainPanel = initMainWindowPanel();
+        NLPProcessing.addModelLoadListener(backend::onModelLoadProgress);
     }
 
     public JPanel getMainPanel() {
@@ -60,10 +63,25 @@ public class MainWindowView {
 
         MWPanel.add(MWPanelSectionA,BorderLayout.NORTH);
         MWPanel.add(MWPanelSectionB,BorderLayout.CENTER);
+        MWPanel.add(createStatusBar(),BorderLayout.SOUTH);
 
         return MWPanel;
     }
 
+    private JPanel createStatusBar(){
+        JPanel bar = new JPanel(new BorderLayout(5, 0));
+        bar.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+
+        statusLabel = new JLabel(" ");
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(false);
+        progressBar.setVisible(false);
+
+        bar.add(statusLabel, BorderLayout.CENTER);
+        bar.add(progressBar, BorderLayout.EAST);
+        return bar;
+    }
+
     //<editor-fold desc="Flattened tree definition Side L: Section Above(A)">
     private JPanel createMWPanelSectA(){
 
@@ -126,6 +144,27 @@ public class MainWindowView {
         urlTextField = new JTextField(10);
         JButton urlActionButton = new JButton("Open");
         urlActionButton.addActionListener(backend.new URLOpenListener(urlTextField)); // this static and non-static shit
+        cancelLoadButton = new JButton("Cancel");
+        cancelLoadButton.setToolTipText("Cancel every load that is still queued or running");
+        cancelLoadButton.setEnabled(false); // enabled by the backend while loads are pending
+        cancelLoadButton.addActionListener(e -> backend.onCancelLoadsClicked());
+        JButton importButton = new JButton("Import…");
+        importButton.setToolTipText("Import a directory, a glob (e.g. /data/*.txt), a file listing urls, a Wikipedia xml dump (.xml, .xml.bz2, .xml.gz) or a file saved as XML; uses the field if filled in");
+        importButton.addActionListener(e -> {
+            String spec = urlTextField.getText().trim();
+            if (spec.isEmpty()) {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setDialogTitle("Import directory, url list, Wikipedia dump or saved XML");
+                chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+                if (chooser.showOpenDialog(container) != JFileChooser.APPROVE_OPTION) return;
+                spec = chooser.getSelectedFile().getAbsolutePath();
+            }
+            backend.onImportRequested(spec);
+        });
+        JPanel urlButtons = new JPanel(new GridLayout(1, 3, 5, 0));
+        urlButtons.add(urlActionButton);
+        urlButtons.add(importButton);
+        urlButtons.add(cancelLoadButton);
 
 //        var historyProvider = new Provider.TextHistorySuggestionProvider();
 //        Decorator.TextSuggestionDecorator.doDecorationOn(urlTextField,
@@ -136,7 +175,7 @@ public class MainWindowView {
         // Registering enclosed items
 
         container.add(urlTextField,BorderLayout.CENTER);
-        container.add(urlActionButton,BorderLayout.EAST);
+        container.add(urlButtons,BorderLayout.EAST);
         // applying BorderLayout on atom items to instruct positioning
 
         return container;
@@ -174,14 +213,24 @@ public class MainWindowView {
             backend.onResetClicked();
         });
         JButton masterSaveButton = new JButton("Save as XML");
+        JButton saveCorpusButton = new JButton("Save corpus");
+        saveCorpusButton.setToolTipText("Save the corpus shown with its annotations and filter schemes (.gwc); open the file again to reload it");
+        JCheckBox virtualizedViewBox = new JCheckBox("Fast view (large texts)",
+                textDisplayPanel.getDisplayMode() == TextDisplayPanel.DisplayMode.virtualized);
+        virtualizedViewBox.setToolTipText("Draw only the visible sentences instead of one html document");
+        virtualizedViewBox.addActionListener(e -> {
+            backend.onDisplayModeChanged(virtualizedViewBox.isSelected()
+                    ? TextDisplayPanel.DisplayMode.virtualized : TextDisplayPanel.DisplayMode.html);
+        });
 
-        JPanel buttonPanel = new JPanel(new GridLayout(2, 1, 0, 5));
+        JPanel buttonPanel = new JPanel(new GridLayout(3, 1, 0, 5));
         gbc.gridy = 1;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weighty = 0.0; // not allowing buttons to v-expand
         gbc.insets = new Insets(5, 5, 5, 5);
         buttonPanel.add(filterActionButton);
         buttonPanel.add(filterResetButton);
+        buttonPanel.add(virtualizedViewBox);
 
         // child widgets/widget-groups
         JPanel filterPanel = initFilterSection();
@@ -211,18 +260,28 @@ public class MainWindowView {
         gbc.weightx = 1.0;
         gbc.weighty = 0.0;
         gbc.insets = new Insets(5, 5, 5, 5);
-        panel.add(masterSaveButton, gbc);
+        JPanel saveButtons = new JPanel(new GridLayout(1, 2, 5, 0));
+        saveButtons.add(masterSaveButton);
+        saveButtons.add(saveCorpusButton);
+        panel.add(saveButtons, gbc);
 
         // Add file selector to masterSaveButton
         masterSaveButton.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Save as XML");
+            fileChooser.setDialogTitle("Save as XML (end the name in .gz to compress)");
             int userSelection = fileChooser.showSaveDialog(panel);
             if (userSelection == JFileChooser.APPROVE_OPTION) {
                 java.io.File fileToSave = fileChooser.getSelectedFile();
                 backend.onSaveClicked(fileToSave);
             }
         });
+        saveCorpusButton.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Save corpus (.gwc)");
+            if (fileChooser.showSaveDialog(panel) == JFileChooser.APPROVE_OPTION) {
+                backend.onSaveCorpusClicked(fileChooser.getSelectedFile());
+            }
+        });
         return panel;
     }
 
@@ -312,6 +371,10 @@ public class MainWindowView {
         return urlTextField;
     }
 
+    public JButton getCancelLoadButton() {
+        return cancelLoadButton;
+    }
+
     public TextDisplayPanel getTextDisplayPanel() {
         return textDisplayPanel;
     }
@@ -8,6 +8,9 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Decorator {
     /**
@@ -18,6 +21,8 @@ public class Decorator {
      *      1. JTextComponent sends a documentEvent
      *      2. The suggestion result is fetched(generated) accordingly
      *      3. PopupMenu re-configure itself to accommodate the updated information
+     * Steps 2 and 3 are asynchronous: document events are coalesced by a debounce timer, the suggestions
+     * are generated on a background worker, and only the result for the latest input makes it back to the EDT.
      * @param <C> Object type of the object to decorate, should be an inherited type ofJTextComponent
      */
 
@@ -35,6 +40,20 @@ public class Decorator {
         private static final int MAX_TEXT_WIDHTH = 20;
         private final LayoutManager layoutManager = new BorderLayout();
         private static final String TEXT_HISTORY_SUGGESTION_PROVIDER_KEY = "TextHistorySuggestionProvider";
+        public static final String DEBOUNCE_PROPERTY = "gw.suggestion.debounceMillis";
+        private static final int DEFAULT_DEBOUNCE_MILLIS = 120;
+
+        // one worker for all decorated fields: only one of them is being typed into at a time
+        private static final ExecutorService SUGGESTION_WORKER = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "suggestion-worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // debounce & in-flight state, EDT only
+        private Timer debounceTimer;
+        private Future<?> inFlight;
+        private long generation; // bumped per request; a result is only shown if it is still the latest
 
         // listener pool
         private ArrayList<ActionListener> selectionListeners = new ArrayList<>();
@@ -71,8 +90,46 @@ public class Decorator {
         }
 
         private void initListener(){
+            debounceTimer = new Timer(Integer.getInteger(DEBOUNCE_PROPERTY, DEFAULT_DEBOUNCE_MILLIS), e -> requestSuggestions());
+            debounceTimer.setRepeats(false);
             invoker.getDocument().addDocumentListener(new PopupDocumentListener());
         }
+
+        public void setDebounceDelay(int millis){
+            debounceTimer.setInitialDelay(millis);
+        }
+
+        // fired by the debounce timer once typing pauses
+        private void requestSuggestions(){
+            discardPending();
+            long request = generation;
+            String input = invoker.getText(); // snapshot on the EDT, the worker never touches the component
+            inFlight = SUGGESTION_WORKER.submit(() -> {
+                List<String> suggestions = suggestionProvider.retrieveSuggestions(input);
+                if (Thread.currentThread().isInterrupted()) return;
+                SwingUtilities.invokeLater(() -> {
+                    if (request != generation || inhibitTextEvent) return; // stale, newer input arrived meanwhile
+                    inFlight = null;
+                    // The non-null test based on performed on the generated suggestions
+                    // but can be later refactored to a "No suggestion" indicating typo,
+                    //  since this already infer no match
+                    if(suggestions != null && !suggestions.isEmpty() && invoker.isShowing()){
+                        presentPopup(suggestions);
+                    }else{
+                        popupMenu.setVisible(false); //nothing to display here, then just don't display anything
+                    }
+                });
+            });
+        }
+
+        // forget whatever is queued or running; its result will be dropped even if it completes
+        private void discardPending(){
+            generation++;
+            if (inFlight != null) {
+                inFlight.cancel(true);
+                inFlight = null;
+            }
+        }
         // The focus should be retained on the decorated object,
         // and the suggestions should only be accessible with keyboard inputs(Up/Down, Enter/Esc)
         // (mouse clicks should be accepted as well but needs some research)
@@ -89,6 +146,8 @@ public class Decorator {
                             e.consume();
                             break;
                         case KeyEvent.VK_ESCAPE:
+                            debounceTimer.stop();
+                            discardPending();
                             popupMenu.setVisible(false);
                             e.consume();
                             break;
@@ -118,6 +177,8 @@ public class Decorator {
             invoker.addFocusListener(new FocusAdapter() {
                 @Override
                 public void focusLost(FocusEvent e) {
+                    debounceTimer.stop();
+                    discardPending();
                     popupMenu.setVisible(false);
                 }
             });
@@ -141,15 +202,8 @@ public class Decorator {
 
             private void doCustomUpdate(DocumentEvent e) {
                 if(inhibitTextEvent) return;
-                List<String> suggestions = suggestionProvider.retrieveSuggestions(invoker);
-                // The non-null test based on performed on the generated suggestions
-                // but can be later refactored to a "No suggestion" indicating typo,
-                //  since this already infer no match
-                if(suggestions != null && !suggestions.isEmpty()){
-                    presentPopup(suggestions);
-                }else{
-                    popupMenu.setVisible(false); //nothing to display here, then just don't display anything
-                }
+                // never compute here: (re)arm the timer, a burst of keystrokes ends up as one request
+                debounceTimer.restart();
             }
         }
 
@@ -170,6 +224,8 @@ public class Decorator {
         }
 
         private void confirmSelection(){
+            debounceTimer.stop();
+            discardPending();
             popupMenu.setVisible(false); // 1. off you go
             if(candidateList.getSelectedIndex() != -1){
                 inhibitTextEvent = true;
@@ -53,7 +53,11 @@ public class Provider {
             on.setText(selectedSuggestion);
         }
         public java.util.List<String> retrieveSuggestions(JTextComponent on){
-            return advisor.apply(on.getText().trim()); // if it's guarded, it IS unwanted
+            return retrieveSuggestions(on.getText());
+        }
+        // component-free variant, safe to call off the EDT with a snapshot of the text
+        public java.util.List<String> retrieveSuggestions(String text){
+            return advisor.apply(text.trim()); // if it's guarded, it IS unwanted
         }
     }
 
@@ -75,12 +79,13 @@ public class Provider {
         }
 
         @Override
-        public java.util.List<String> retrieveSuggestions(JTextComponent on) {
-            return filterHistory(on.getText().trim());
+        public java.util.List<String> retrieveSuggestions(String text) {
+            return filterHistory(text.trim());
         }
 
         // Fixed filtering logic
-        public java.util.List<String> filterHistory(String input) {
+        // synchronized: filtering runs on the suggestion worker, additions come from the EDT
+        public synchronized java.util.List<String> filterHistory(String input) {
             if (input == null || input.isEmpty()) {
                 return new ArrayList<>(history);
             }
@@ -102,7 +107,7 @@ public class Provider {
         }
 
         // Add method to update history
-        public void addToHistory(String entry) {
+        public synchronized void addToHistory(String entry) {
             if (entry == null || entry.trim().isEmpty()) return;
 
             entry = entry.trim();
@@ -119,11 +124,11 @@ public class Provider {
             }
         }
 
-        public List<String> getHistory() {
+        public synchronized List<String> getHistory() {
             return new ArrayList<>(history);
         }
 
-        public void clearHistory() {
+        public synchronized void clearHistory() {
             history.clear();
         }
     }
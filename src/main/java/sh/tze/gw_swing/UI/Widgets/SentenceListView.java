@@ -0,0 +1,169 @@
+package sh.tze.gw_swing.UI.Widgets;
+
+import com.lexparser.scraper.nlp.AnnotatedToken;
+import com.lexparser.scraper.nlp.NLPProcessing;
+import com.lexparser.scraper.nlp.SearchResult;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Virtualized interlinear view: one row per sentence (form, lemma and POS line), fixed row height,
+ * painted directly instead of going through an html document.
+ * JList only asks the model and the renderer for the rows in the viewport, so a 1M-sentence corpus
+ * costs the same to show and scroll as a 1k one. The models read straight from the annotations.
+ */
+public class SentenceListView extends JList<SentenceListView.Row> {
+
+    private static final int PADDING = 4;
+
+    /**
+     * One displayed sentence; {@code highlight} is the token index to bold, -1 for none.
+     */
+    public record Row(List<AnnotatedToken> tokens, int highlight) {
+    }
+
+    public SentenceListView() {
+        super(new CorpusModel(null));
+        setCellRenderer(new InterlinearRenderer());
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        setLayoutOrientation(JList.VERTICAL);
+        updateCellMetrics(); // both fixed: JList must never measure every row to lay out
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        updateCellMetrics(); // font may have changed with the l&f
+    }
+
+    private void updateCellMetrics() {
+        FontMetrics fm = getFontMetrics(getFont());
+        setFixedCellHeight(3 * fm.getHeight() + 2 * PADDING + 1);
+        setFixedCellWidth(Math.max(getFixedCellWidth(), 1));
+    }
+
+    // rows are not measured up front; the width grows to the widest row that has been painted
+    private void ensureCellWidth(int width) {
+        if (width > getFixedCellWidth()) {
+            SwingUtilities.invokeLater(() -> {
+                if (width > getFixedCellWidth()) setFixedCellWidth(width);
+            });
+        }
+    }
+
+    //<editor-fold desc="Models">
+    /**
+     * Unfiltered view of a corpus. Sentences are fetched on access; while the corpus is still
+     * streaming in, {@link #grow(int)} announces the newly annotated ones.
+     */
+    public static class CorpusModel extends AbstractListModel<Row> {
+        private final List<List<AnnotatedToken>> sentences;
+        private int size;
+
+        public CorpusModel(NLPProcessing source) {
+            this.sentences = source == null ? List.of() : source.getWordSentences();
+            this.size = sentences.size();
+        }
+
+        public void grow(int newSize) {
+            if (newSize <= size) return;
+            int from = size;
+            size = newSize;
+            fireIntervalAdded(this, from, newSize - 1);
+        }
+
+        @Override
+        public int getSize() { return size; }
+
+        @Override
+        public Row getElementAt(int index) {
+            return new Row(sentences.get(index), -1);
+        }
+    }
+
+    /**
+     * Filter hits, grouped per identity like doFilter returns them, shown one hit per row.
+     * Only the group sizes are indexed; rows are resolved with a binary search over their prefix sums.
+     */
+    public static class ResultModel extends AbstractListModel<Row> {
+        private final List<List<SearchResult>> groups;
+        private final int[] groupStarts;
+
+        public ResultModel(List<List<SearchResult>> groups) {
+            this.groups = groups;
+            this.groupStarts = new int[groups.size() + 1];
+            for (int g = 0; g < groups.size(); g++) {
+                groupStarts[g + 1] = groupStarts[g] + groups.get(g).size();
+            }
+        }
+
+        @Override
+        public int getSize() { return groupStarts[groups.size()]; }
+
+        @Override
+        public Row getElementAt(int index) {
+            int lo = 0, hi = groups.size() - 1;
+            while (lo < hi) { // last group starting at or before index
+                int mid = (lo + hi + 1) >>> 1;
+                if (groupStarts[mid] <= index) lo = mid;
+                else hi = mid - 1;
+            }
+            SearchResult sr = groups.get(lo).get(index - groupStarts[lo]);
+            return new Row(sr.getSentence(), sr.getIndex());
+        }
+    }
+    //</editor-fold>
+
+    // paints the three lines of a row; one instance is reused for every visible cell
+    private class InterlinearRenderer extends JComponent implements ListCellRenderer<Row> {
+        private Row row;
+        private boolean selected;
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Row> list, Row value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            this.row = value;
+            this.selected = isSelected;
+            setFont(list.getFont());
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(selected ? getSelectionBackground() : SentenceListView.this.getBackground());
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (row == null) return;
+
+            Font plain = getFont();
+            Font bold = plain.deriveFont(Font.BOLD);
+            FontMetrics fm = g2.getFontMetrics(plain);
+            FontMetrics fmBold = g2.getFontMetrics(bold);
+            int lineHeight = fm.getHeight();
+            int baseline = PADDING + fm.getAscent();
+            int space = fm.charWidth(' ');
+
+            g2.setColor(selected ? getSelectionForeground() : SentenceListView.this.getForeground());
+            int x = PADDING;
+            List<AnnotatedToken> tokens = row.tokens();
+            for (int j = 0; j < tokens.size(); j++) {
+                AnnotatedToken w = tokens.get(j);
+                boolean hl = j == row.highlight();
+                FontMetrics m = hl ? fmBold : fm;
+                g2.setFont(hl ? bold : plain);
+                g2.drawString(w.getForm(), x, baseline);
+                g2.drawString(w.getLemma(), x, baseline + lineHeight);
+                g2.drawString(w.getPos(), x, baseline + 2 * lineHeight);
+                // columns are aligned per token, unlike the html view where each line flows on its own
+                x += Math.max(m.stringWidth(w.getForm()), Math.max(m.stringWidth(w.getLemma()), m.stringWidth(w.getPos()))) + space;
+            }
+            g2.setFont(plain);
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.drawLine(0, getHeight() - 1, getWidth(), getHeight() - 1);
+            ensureCellWidth(x + PADDING);
+        }
+    }
+}
@@ -3,19 +3,56 @@ package sh.tze.gw_swing.UI.Widgets;
 import sh.tze.gw_swing.UI.Backend.DataRepresentation.PresentableWord;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
 import java.awt.*;
+import java.io.IOException;
 import java.util.List;
 public class TextDisplayPanel extends JPanel {
+    // html: one JEditorPane document for everything; virtualized: SentenceListView, only visible rows are laid out
+    public enum DisplayMode { html, virtualized }
+    public static final String DISPLAY_MODE_PROPERTY = "gw.display.mode";
+
     private JEditorPane editorPane;
     private JScrollPane scrollPane;
+    private SentenceListView sentenceList;
+    private JScrollPane listScrollPane;
+    private final CardLayout cards = new CardLayout();
+    private DisplayMode displayMode;
 
     public TextDisplayPanel() {
-        setLayout(new BorderLayout());
+        setLayout(cards);
         editorPane = new JEditorPane();
         editorPane.setContentType("text/html");
         editorPane.setEditable(false);
         scrollPane = new JScrollPane(editorPane);
-        add(scrollPane, BorderLayout.CENTER);
+        sentenceList = new SentenceListView();
+        listScrollPane = new JScrollPane(sentenceList);
+        add(scrollPane, DisplayMode.html.name());
+        add(listScrollPane, DisplayMode.virtualized.name());
+
+        String configured = System.getProperty(DISPLAY_MODE_PROPERTY, DisplayMode.virtualized.name());
+        setDisplayMode("html".equalsIgnoreCase(configured) ? DisplayMode.html : DisplayMode.virtualized);
+    }
+
+    public DisplayMode getDisplayMode() { return displayMode; }
+
+    // only flips the visible card; the caller re-presents its content in the new mode
+    public void setDisplayMode(DisplayMode mode) {
+        DisplayMode old = displayMode;
+        displayMode = mode;
+        cards.show(this, mode.name());
+        firePropertyChange("displayMode", old, mode);
+    }
+
+    // virtualized mode: show rows from a model over the annotations, nothing is rendered up front
+    public void showSentences(ListModel<SentenceListView.Row> model) {
+        sentenceList.setModel(model);
+        sentenceList.setFixedCellWidth(1); // re-grows to the widest painted row of the new content
+        listScrollPane.getViewport().setViewPosition(new Point(0, 0));
     }
 
 
@@ -29,8 +66,32 @@ public class TextDisplayPanel extends JPanel {
     }
 
     public void setText(String text) { editorPane.setText(text);}
+
+    // installs a document that was built elsewhere (e.g. parsed off the EDT)
+    public void setDocument(HTMLDocument document) {
+        editorPane.setDocument(document);
+        editorPane.setCaretPosition(0);
+    }
+
+    // appends an html fragment to the end of <body>, without re-parsing what is already shown
+    public void appendHTML(String html) {
+        if (!(editorPane.getDocument() instanceof HTMLDocument)) {
+            return;
+        }
+        HTMLDocument doc = (HTMLDocument) editorPane.getDocument();
+        Element body = doc.getElement(doc.getDefaultRootElement(), StyleConstants.NameAttribute, HTML.Tag.BODY);
+        if (body == null) {
+            return;
+        }
+        try {
+            doc.insertBeforeEnd(body, html);
+        } catch (BadLocationException | IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
     public void clearDisplay(){
         editorPane.setText("");
+        sentenceList.setModel(new SentenceListView.CorpusModel(null));
     }
 }
 
@@ -0,0 +1,215 @@
+package com.lexparser.scraper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link HttpCache} against a local server that answers conditional requests.
+ */
+class HttpCacheTest {
+
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    // path -> body; a path served with an ETag unless it starts with /dated
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>(); // "path If-None-Match If-Modified-Since"
+    private final List<String> bodiesSent = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        requests.add(path + " " + ifNoneMatch + " " + ifModifiedSince);
+
+        if (path.startsWith("/always304")) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        String body = pages.get(path);
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        boolean dated = path.startsWith("/dated");
+        String etag = '"' + Integer.toHexString(body.hashCode()) + '"';
+        if (dated ? LAST_MODIFIED.equals(ifModifiedSince) : etag.equals(ifNoneMatch)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        if (dated) {
+            exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+        } else {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bodiesSent.add(path);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private HttpCache cache(long maxBytes) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return new HttpCache(directory, maxBytes, new HttpFetcher(client, 4));
+    }
+
+    private static String text(HttpCache cache, String url) throws IOException {
+        return cache.fetch(url, (body, charset, location) -> new String(body.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void revalidatesWithETag() throws IOException {
+        pages.put("/page", "<p>first</p>");
+        HttpCache cache = cache(1 << 20);
+
+        assertEquals("<p>first</p>", text(cache, url("/page")));
+        assertEquals("<p>first</p>", text(cache, url("/page")));
+        String etag = '"' + Integer.toHexString("<p>first</p>".hashCode()) + '"';
+        assertEquals(List.of("/page null null", "/page " + etag + " null"), requests);
+        assertEquals(List.of("/page"), bodiesSent, "the second fetch is a 304, served from disk");
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void revalidatesWithLastModified() throws IOException {
+        pages.put("/dated", "<p>dated</p>");
+        HttpCache cache = cache(1 << 20);
+
+        assertEquals("dated", cache.fetchDocument(url("/dated")).select("p").text());
+        assertEquals("dated", cache.fetchDocument(url("/dated")).select("p").text());
+        assertEquals(List.of("/dated null null", "/dated null " + LAST_MODIFIED), requests);
+        assertEquals(1, bodiesSent.size());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void refetchesChangedPage() throws IOException {
+        pages.put("/page", "<p>first</p>");
+        HttpCache cache = cache(1 << 20);
+        assertEquals("<p>first</p>", text(cache, url("/page")));
+
+        pages.put("/page", "<p>second</p>");
+        assertEquals("<p>second</p>", text(cache, url("/page")));
+        assertEquals("<p>second</p>", text(cache, url("/page"))); // and it is the new body that is cached now
+        assertEquals(List.of("/page", "/page"), bodiesSent);
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void servesCachedPagesOffline() throws IOException {
+        pages.put("/page", "<p>first</p>");
+        HttpCache cache = cache(1 << 20);
+        assertEquals("<p>first</p>", text(cache, url("/page")));
+
+        server.stop(0);
+        cache.setOffline(true);
+        assertEquals("<p>first</p>", text(cache, url("/page")));
+        assertEquals(1, requests.size(), "offline never touches the network");
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void offlineMissIsFileNotFound() {
+        HttpCache cache = cache(1 << 20);
+        cache.setOffline(true);
+        assertThrows(FileNotFoundException.class, () -> text(cache, url("/page")));
+        assertTrue(requests.isEmpty());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void notModifiedWithoutEntryIsAnError() {
+        HttpCache cache = cache(1 << 20);
+        HttpStatusException e = assertThrows(HttpStatusException.class, () -> text(cache, url("/always304")));
+        assertEquals(304, e.getStatusCode());
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void errorStatusIsNotCached() throws IOException {
+        HttpCache cache = cache(1 << 20);
+        HttpStatusException e = assertThrows(HttpStatusException.class, () -> text(cache, url("/missing")));
+        assertEquals(404, e.getStatusCode());
+
+        cache.setOffline(true);
+        assertThrows(FileNotFoundException.class, () -> text(cache, url("/missing")));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        // hex of random bytes deflates to about half, so a bit over 4 KB on disk each; room for two of them
+        Random random = new Random(42);
+        for (String page : List.of("/a", "/b", "/c")) {
+            byte[] noise = new byte[4096];
+            random.nextBytes(noise);
+            pages.put(page, HexFormat.of().formatHex(noise));
+        }
+        HttpCache cache = cache(10 * 1024);
+
+        text(cache, url("/a"));
+        Thread.sleep(20);
+        text(cache, url("/b"));
+        Thread.sleep(20);
+        text(cache, url("/a")); // a hit makes /a the most recently used
+        Thread.sleep(20);
+        text(cache, url("/c")); // over the limit, /b goes
+
+        cache.setOffline(true);
+        assertEquals(pages.get("/a"), text(cache, url("/a")));
+        assertEquals(pages.get("/c"), text(cache, url("/c")));
+        assertThrows(FileNotFoundException.class, () -> text(cache, url("/b")));
+    }
+}
@@ -0,0 +1,219 @@
+package com.lexparser.scraper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link HttpFetcher} against a local server.
+ */
+class HttpFetcherTest {
+
+    private static final String PAGE = "<html><head><title>Test</title></head><body><p>Hello, world.</p></body></html>";
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static HttpFetcher fetcher(int perHost) {
+        // plain HTTP/1.1, so the connection a response came over is the one the next request reuses
+        return new HttpFetcher(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(), perHost);
+    }
+
+    private static void send(HttpExchange exchange, String encoding, byte[] body) throws IOException {
+        if (encoding != null) exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] compress(byte[] data, OutputStreamFactory factory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = factory.wrap(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface OutputStreamFactory {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    private static String readBody(HttpFetcher fetcher, URI uri) throws IOException {
+        try (HttpFetcher.Response response = fetcher.get(uri, Map.of())) {
+            assertEquals(200, response.status());
+            return new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void asksForCompression() throws IOException {
+        List<String> accepted = new ArrayList<>();
+        server.createContext("/", exchange -> {
+            accepted.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            send(exchange, null, PAGE.getBytes(StandardCharsets.UTF_8));
+        });
+        assertEquals(PAGE, readBody(fetcher(4), uri("/plain")));
+        assertEquals(List.of("gzip, deflate"), accepted);
+    }
+
+    @Test
+    void decodesGzip() throws IOException {
+        byte[] body = compress(PAGE.getBytes(StandardCharsets.UTF_8), GZIPOutputStream::new);
+        server.createContext("/", exchange -> send(exchange, "gzip", body));
+        assertEquals(PAGE, readBody(fetcher(4), uri("/gzip")));
+    }
+
+    @Test
+    void decodesZlibDeflate() throws IOException {
+        byte[] body = compress(PAGE.getBytes(StandardCharsets.UTF_8), DeflaterOutputStream::new);
+        server.createContext("/", exchange -> send(exchange, "deflate", body));
+        assertEquals(PAGE, readBody(fetcher(4), uri("/zlib")));
+    }
+
+    @Test
+    void decodesRawDeflate() throws IOException {
+        // what some servers send as "deflate": no zlib header
+        byte[] body = compress(PAGE.getBytes(StandardCharsets.UTF_8),
+                out -> new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true)));
+        server.createContext("/", exchange -> send(exchange, "deflate", body));
+        assertEquals(PAGE, readBody(fetcher(4), uri("/raw")));
+    }
+
+    @Test
+    void parsesDocument() throws IOException {
+        byte[] body = compress(PAGE.getBytes(StandardCharsets.UTF_8), GZIPOutputStream::new);
+        server.createContext("/", exchange -> send(exchange, "gzip", body));
+        var document = fetcher(4).fetchDocument(uri("/doc").toString());
+        assertEquals("Test", document.title());
+        assertEquals(uri("/doc").toString(), document.location());
+    }
+
+    @Test
+    void capsRequestsPerHost() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger mostInFlight = new AtomicInteger();
+        server.createContext("/", exchange -> {
+            mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(150);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            send(exchange, null, PAGE.getBytes(StandardCharsets.UTF_8));
+        });
+
+        HttpFetcher fetcher = fetcher(2);
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<String>> pages = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                URI page = uri("/page" + i);
+                pages.add(clients.submit(() -> readBody(fetcher, page)));
+            }
+            for (Future<String> page : pages) {
+                assertEquals(PAGE, page.get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertTrue(mostInFlight.get() <= 2, "at most 2 requests at once, saw " + mostInFlight.get());
+    }
+
+    @Test
+    void drainsBodyOnClose() throws IOException {
+        // the rest of a body is read on close so the connection can be reused, like after jsoup stops at </html>
+        List<InetSocketAddress> clients = new ArrayList<>();
+        HttpHandler handler = exchange -> {
+            synchronized (clients) {
+                clients.add(exchange.getRemoteAddress());
+            }
+            exchange.sendResponseHeaders(200, 32 * 1024);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[16]);
+                out.flush();
+                Thread.sleep(100); // the rest is still on its way when the client closes
+                out.write(new byte[32 * 1024 - 16]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        server.createContext("/", handler);
+
+        HttpFetcher fetcher = fetcher(1);
+        for (int i = 0; i < 3; i++) {
+            try (HttpFetcher.Response response = fetcher.get(uri("/big"), Map.of())) {
+                InputStream in = response.body();
+                assertEquals(16, in.readNBytes(16).length); // and stop reading
+            }
+        }
+        assertEquals(3, clients.size());
+        assertEquals(1, clients.stream().distinct().count(), "one connection for all requests: " + clients);
+    }
+
+    @Test
+    void encodesUrls() throws IOException {
+        List<String> paths = new ArrayList<>();
+        server.createContext("/", exchange -> {
+            paths.add(exchange.getRequestURI().getRawPath() + "?" + exchange.getRequestURI().getRawQuery());
+            send(exchange, null, PAGE.getBytes(StandardCharsets.UTF_8));
+        });
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher(4).fetchDocument(base + "/wiki/New York?q=a b");
+        fetcher(4).fetchDocument(base + "/wiki/Köln?q=ü");
+        fetcher(4).fetchDocument(base + "/wiki/100%25_(film)?q=%20");
+        assertEquals(List.of("/wiki/New%20York?q=a%20b", "/wiki/K%C3%B6ln?q=%C3%BC", "/wiki/100%25_(film)?q=%20"), paths);
+    }
+
+    @Test
+    void rejectsMalformedUrls() {
+        assertThrows(MalformedURLException.class, () -> HttpFetcher.toURI("not a url"));
+        assertThrows(MalformedURLException.class, () -> fetcher(4).fetchDocument("en.wikipedia.org/wiki/Test"));
+    }
+}
@@ -0,0 +1,219 @@
+package com.lexparser.scraper;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link StreamingContentExtractor} against the Document based extraction it replaces: the same page parsed
+ * into a whole Document and run through {@link WikipediaContentExtractor} and a {@code select("p")} over
+ * #mw-content-text must give the same results.
+ */
+class StreamingContentExtractorTest {
+
+    private static final String BASE_URI = "https://en.wikipedia.org/wiki/Java_(programming_language)";
+
+    // the article text the way it was taken out of a whole Document before the page was streamed
+    private static String domArticleText(Document doc) {
+        Element content = doc.getElementById("mw-content-text");
+        if (content == null) {
+            throw new IllegalArgumentException("No article content (#mw-content-text) on " + doc.location());
+        }
+        StringBuilder cleanedText = new StringBuilder();
+        for (Element paragraph : content.select("p")) {
+            String text = paragraph.text();
+            if (!text.isEmpty()) {
+                cleanedText.append(text).append("\n\n");
+            }
+        }
+        return cleanedText.toString();
+    }
+
+    private static String fixture() throws IOException {
+        try (InputStream in = StreamingContentExtractorTest.class.getResourceAsStream("article.html")) {
+            assertNotNull(in, "article.html fixture");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static StreamingContentExtractor.Result stream(String html) throws IOException {
+        return StreamingContentExtractor.extract(new StringReader(html), BASE_URI, p -> {
+        });
+    }
+
+    private static void assertSameContent(Document doc, StreamingContentExtractor.Result page, String html) {
+        WikipediaContentExtractor.ExtractedContent expected = new WikipediaContentExtractor().extractContent(doc);
+        WikipediaContentExtractor.ExtractedContent actual = page.toExtractedContent();
+        assertEquals(expected.getTitle(), actual.getTitle(), html);
+        assertEquals(expected.getSections(), actual.getSections(), html);
+        assertEquals(expected.getParagraphs(), actual.getParagraphs(), html);
+        assertEquals(expected.getInfoboxData(), actual.getInfoboxData(), html);
+    }
+
+    @Test
+    void matchesDocumentOnFixturePage() throws IOException {
+        String html = fixture();
+        Document doc = Jsoup.parse(html, BASE_URI);
+        StreamingContentExtractor.Result page = stream(html);
+
+        assertSameContent(doc, page, "article.html");
+        assertEquals(domArticleText(doc), page.articleText());
+        assertEquals(doc.title(), page.getPageTitle());
+        assertEquals("en", page.getLanguage());
+        assertTrue(page.isArticle());
+
+        // and the fixture does exercise what it is there for
+        WikipediaContentExtractor.ExtractedContent content = page.toExtractedContent();
+        assertEquals("Java (programming language)", content.getTitle());
+        assertEquals(List.of("History", "Principles"), content.getSections());
+        assertTrue(content.getInfoboxData().contains("Designed by: James Gosling"), content.getInfoboxData().toString());
+        assertFalse(page.articleText().contains("Navigation"));
+        assertTrue(page.articleText().contains("Quoted paragraphs inside a blockquote"));
+        assertTrue(page.articleText().contains("spaced code keeps its words"));
+    }
+
+    @Test
+    void handsOutParagraphsInOrder() throws IOException {
+        String html = fixture();
+        List<String> streamed = new ArrayList<>();
+        StreamingContentExtractor.Result page = StreamingContentExtractor.extract(
+                new StringReader(html), BASE_URI, streamed::add);
+        StringBuilder joined = new StringBuilder();
+        for (String p : streamed) {
+            joined.append(p).append("\n\n");
+        }
+        assertEquals(page.articleText(), joined.toString());
+    }
+
+    @Test
+    void decodesBodyBytes() throws IOException {
+        String html = fixture();
+        StreamingContentExtractor.Result page = StreamingContentExtractor.extract(
+                new java.io.ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null, BASE_URI, p -> {
+                });
+        assertEquals(domArticleText(Jsoup.parse(html, BASE_URI)), page.articleText());
+    }
+
+    @Test
+    void pageWithoutContentHasNoArticleText() throws IOException {
+        String html = "<html><head><title>Search</title></head><body><h1>Search results</h1><p>Nothing here.</p></body></html>";
+        Document doc = Jsoup.parse(html, BASE_URI);
+        StreamingContentExtractor.Result page = stream(html);
+        assertThrows(IllegalArgumentException.class, () -> domArticleText(doc));
+        assertThrows(IllegalArgumentException.class, page::articleText);
+        assertFalse(page.isArticle());
+        assertSameContent(doc, page, html);
+    }
+
+    //<editor-fold desc="Generated pages">
+    private static final String[] WORDS = {"alpha", "beta", "Gamma", "delta", "references", "See also", "notes", "x",
+            "Lorem ipsum dolor sit amet", "1990", "é", "&amp;", "  "};
+
+    private static String word(Random r) {
+        return WORDS[r.nextInt(WORDS.length)];
+    }
+
+    // nested markup of the kinds the extractor cares about; tables only ever hold cells, so nothing is foster
+    // parented, which a stream can't follow (the parser moves content out of a table after it has been seen)
+    private static void generate(StringBuilder sb, Random r, int depth) {
+        int n = r.nextInt(5);
+        for (int i = 0; i < n; i++) {
+            switch (r.nextInt(depth > 5 ? 3 : 16)) {
+                case 0, 1, 2 -> sb.append(word(r)).append(' ');
+                case 3 -> {
+                    sb.append("<p>");
+                    generate(sb, r, depth + 1);
+                    sb.append(r.nextBoolean() ? "</p>" : "");
+                }
+                case 4 -> {
+                    sb.append("<div class=\"mw-parser-output\">");
+                    generate(sb, r, depth + 1);
+                    sb.append("</div>");
+                }
+                case 5 -> {
+                    sb.append("<h2>");
+                    if (r.nextBoolean()) sb.append("<span class=mw-headline>").append(word(r)).append("</span>");
+                    generate(sb, r, depth + 2);
+                    sb.append("</h2>");
+                }
+                case 6 -> sb.append("<h3><span class='mw-headline x'>").append(word(r)).append(' ').append(word(r))
+                        .append("</span></h3>");
+                case 7 -> {
+                    sb.append("<table class=infobox><tr><th>").append(word(r)).append("</th><td>").append(word(r))
+                            .append("</td></tr><tr><td>");
+                    generate(sb, r, depth + 1);
+                    sb.append("</td><td>");
+                    if (r.nextBoolean()) sb.append("<table class=infobox><tr><th>in</th><td>ner</td></tr></table>");
+                    sb.append("</td></tr></table>");
+                }
+                case 8 -> {
+                    sb.append("<b>");
+                    generate(sb, r, depth + 1);
+                    sb.append(r.nextBoolean() ? "</b>" : "</i>");
+                }
+                case 9 -> {
+                    sb.append("<div id=mw-content-text>");
+                    generate(sb, r, depth + 1);
+                    sb.append("</div>");
+                }
+                case 10 -> sb.append("<h1>").append(r.nextBoolean()
+                        ? "<span class=mw-page-title-main>" + word(r) + "</span>" : word(r)).append("</h1>");
+                case 11 -> {
+                    sb.append("<i>");
+                    generate(sb, r, depth + 1);
+                }
+                case 12 -> {
+                    sb.append("<table><tr><td>");
+                    generate(sb, r, depth + 1);
+                    sb.append("</td></tr></table>");
+                }
+                case 13 -> sb.append("<p>").append(word(r)).append(' ').append(word(r)).append(' ').append(word(r))
+                        .append(' ').append(word(r)).append(' ').append(word(r)).append("</p>");
+                case 14 -> {
+                    sb.append("<ul><li>");
+                    generate(sb, r, depth + 1);
+                    sb.append("<li>").append(word(r)).append("</ul>");
+                }
+                default -> sb.append("<br>").append(word(r)).append("<sup>[1]</sup>");
+            }
+        }
+    }
+
+    @Test
+    void matchesDocumentOnGeneratedPages() throws IOException {
+        for (int seed = 0; seed < 2000; seed++) {
+            Random r = new Random(seed);
+            StringBuilder sb = new StringBuilder(seed % 3 == 0 ? "<!DOCTYPE html>" : "");
+            sb.append("<html><head><title>t</title></head><body>");
+            if (r.nextInt(3) > 0) {
+                sb.append("<div id=mw-content-text><div class=mw-parser-output>");
+                generate(sb, r, 0);
+                sb.append("</div></div>");
+            }
+            generate(sb, r, 0);
+            sb.append("</body></html>");
+            String html = sb.toString();
+
+            Document doc = Jsoup.parse(html, BASE_URI);
+            StreamingContentExtractor.Result page = stream(html);
+            assertSameContent(doc, page, html);
+            if (doc.getElementById("mw-content-text") == null) {
+                assertThrows(IllegalArgumentException.class, page::articleText, html);
+            } else {
+                assertEquals(domArticleText(doc), page.articleText(), html);
+            }
+        }
+    }
+    //</editor-fold>
+}
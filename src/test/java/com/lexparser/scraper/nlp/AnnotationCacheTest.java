@@ -0,0 +1,110 @@
+package com.lexparser.scraper.nlp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link AnnotationCache} round trips, and damaged entries dropped instead of read.
+ */
+class AnnotationCacheTest {
+
+    private static final String TEXT = "Dogs bark. Cats sleep.";
+    private static final int MAGIC = 0x47574143;
+
+    @TempDir
+    Path directory;
+
+    private static NLPProcessing annotated() {
+        return NLPProcessing.fromAnnotations(TEXT, new String[]{"Dogs bark.", "Cats sleep."}, List.of(
+                List.of(new AnnotatedToken("Dogs", "NOUN", "dog"), new AnnotatedToken("bark", "VERB", "bark"),
+                        new AnnotatedToken(".", "PUNCT", ".")),
+                List.of(new AnnotatedToken("Cats", "NOUN", "cat"), new AnnotatedToken("sleep", "VERB", "sleep"),
+                        new AnnotatedToken(".", "PUNCT", "."))));
+    }
+
+    private Path entry() {
+        return directory.resolve(AnnotationCache.key(TEXT) + ".ann");
+    }
+
+    // an entry with a valid header and then the given varints
+    private void writeEntry(int... varints) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(1);
+            for (int v : varints) {
+                while ((v & ~0x7F) != 0) {
+                    out.writeByte((v & 0x7F) | 0x80);
+                    v >>>= 7;
+                }
+                out.writeByte(v);
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(entry())) {
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    private void assertDropped() {
+        AnnotationCache cache = new AnnotationCache(directory, 1 << 20);
+        assertNull(cache.get(TEXT));
+        assertFalse(Files.exists(entry()), "a damaged entry is deleted");
+    }
+
+    @Test
+    void roundTrips() {
+        AnnotationCache cache = new AnnotationCache(directory, 1 << 20);
+        cache.put(annotated());
+        NLPProcessing back = cache.get(TEXT);
+        assertNotNull(back);
+        assertEquals(annotated().getWordSentences().toString(), back.getWordSentences().toString());
+        assertEquals("cat", back.getColumnarCorpus().lemma(3));
+    }
+
+    @Test
+    void hugeSentenceCountIsDropped() throws IOException {
+        writeEntry(Integer.MAX_VALUE);
+        assertDropped();
+    }
+
+    @Test
+    void negativeCountIsDropped() throws IOException {
+        writeEntry(-1);
+        assertDropped();
+    }
+
+    @Test
+    void hugeStringLengthIsDropped() throws IOException {
+        writeEntry(1, Integer.MAX_VALUE - 8);
+        assertDropped();
+    }
+
+    @Test
+    void hugeDictionaryIsDropped() throws IOException {
+        writeEntry(0, Integer.MAX_VALUE - 8);
+        assertDropped();
+    }
+
+    @Test
+    void hugeSentenceLengthIsDropped() throws IOException {
+        writeEntry(1, 0, 1, 0, Integer.MAX_VALUE - 8);
+        assertDropped();
+    }
+
+    @Test
+    void termIdOutOfRangeIsDropped() throws IOException {
+        writeEntry(1, 0, 1, 0, 1, 5, 0, 0);
+        assertDropped();
+    }
+}
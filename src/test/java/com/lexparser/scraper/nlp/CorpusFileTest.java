@@ -0,0 +1,87 @@
+package com.lexparser.scraper.nlp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CorpusFile} round trips read straight from the mapping, and damaged files refused when they are opened.
+ */
+class CorpusFileTest {
+
+    private static final String TEXT = "Dogs bark. Cats sleep.";
+
+    @TempDir
+    Path directory;
+
+    private static NLPProcessing annotated() {
+        return NLPProcessing.fromAnnotations(TEXT, new String[]{"Dogs bark.", "Cats sleep."}, List.of(
+                List.of(new AnnotatedToken("Dogs", "NOUN", "dog"), new AnnotatedToken("bark", "VERB", "bark"),
+                        new AnnotatedToken(".", "PUNCT", ".")),
+                List.of(new AnnotatedToken("Cats", "NOUN", "cat"), new AnnotatedToken("sleep", "VERB", "sleep"),
+                        new AnnotatedToken(".", "PUNCT", "."))));
+    }
+
+    private Path written() throws IOException {
+        Path file = directory.resolve("corpus" + CorpusFile.SUFFIX);
+        CorpusFile.write(file, annotated(), new CorpusFile.Metadata("https://example.org", "2026-01-01T00:00:00", List.of()));
+        return file;
+    }
+
+    // the file with one int of the given section (see the header: six ints, then the section offsets) replaced
+    private Path damaged(int section, int index, int value) throws IOException {
+        byte[] bytes = Files.readAllBytes(written());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = buffer.getLong(6 * Integer.BYTES + section * Long.BYTES);
+        buffer.putInt((int) offset + index * Integer.BYTES, value);
+        Path file = directory.resolve("damaged" + CorpusFile.SUFFIX);
+        Files.write(file, bytes);
+        return file;
+    }
+
+    @Test
+    void readsBackFromMapping() throws IOException {
+        NLPProcessing original = annotated();
+        CorpusFile file = CorpusFile.open(written());
+        NLPProcessing back = file.asNLPProcessing();
+
+        assertTrue(back.isComplete());
+        assertEquals(TEXT, back.getText());
+        assertEquals(original.getWordSentences(), back.getWordSentences());
+        assertEquals(2, back.getSentences().length);
+        assertEquals("https://example.org", file.getMetadata().url());
+
+        AnnotatedToken cats = new AnnotatedToken("cats", "NOUN", "cat");
+        assertArrayEquals(original.occurrences(cats, false), back.occurrences(cats, false));
+        assertArrayEquals(new int[]{1, 4}, back.match("", "VERB", "", false));
+        assertEquals(original.completeLemma("d", 5), back.completeLemma("d", 5));
+        assertEquals(original.getColumnarCorpus().termId("sleep"), back.getColumnarCorpus().termId("sleep"));
+        assertNotNull(back.getIndex());
+    }
+
+    @Test
+    void decreasingTermOffsetIsRefused() throws IOException {
+        Path file = damaged(4, 1, 1 << 20); // TERMS: the first term ends past everything after it
+        assertThrows(IOException.class, () -> CorpusFile.open(file));
+    }
+
+    @Test
+    void formIdOutOfRangeIsRefused() throws IOException {
+        Path file = damaged(1, 2, 1000); // FORMS
+        assertThrows(IOException.class, () -> CorpusFile.open(file));
+    }
+
+    @Test
+    void decreasingSentenceStartIsRefused() throws IOException {
+        Path file = damaged(0, 1, 7); // SENTENCES: the first sentence ends after the second
+        assertThrows(IOException.class, () -> CorpusFile.open(file));
+    }
+}
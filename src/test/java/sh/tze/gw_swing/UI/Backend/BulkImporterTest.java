@@ -0,0 +1,54 @@
+package sh.tze.gw_swing.UI.Backend;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * How {@link BulkImporter#expand} reads an import spec.
+ */
+class BulkImporterTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void files() throws IOException {
+        Files.createDirectories(directory.resolve("d"));
+        Files.createDirectories(directory.resolve("run [2020]"));
+        Files.writeString(directory.resolve("a.txt"), "a");
+        Files.writeString(directory.resolve("c.md"), "c");
+        Files.writeString(directory.resolve("d/b.txt"), "b");
+        Files.writeString(directory.resolve("run [2020]/r.txt"), "r");
+        Files.writeString(directory.resolve("list?.txt"), "# sources\n\nhttps://en.wikipedia.org/wiki/Test\n  /data/x.txt \n");
+    }
+
+    private String at(String relative) {
+        return directory.resolve(relative).toString();
+    }
+
+    @Test
+    void expandsDirectory() throws IOException {
+        assertEquals(List.of(at("d/b.txt")), BulkImporter.expand(at("d")));
+    }
+
+    @Test
+    void expandsGlob() throws IOException {
+        assertEquals(List.of(at("a.txt"), at("list?.txt")), BulkImporter.expand(at("*.txt")));
+        assertEquals(List.of(at("d/b.txt")), BulkImporter.expand(at("d/*.txt")));
+        assertEquals(List.of(at("d/b.txt"), at("run [2020]/r.txt")), BulkImporter.expand(at("*/*.txt")));
+    }
+
+    @Test
+    void existingPathIsNotAGlob() throws IOException {
+        assertEquals(List.of(at("run [2020]/r.txt")), BulkImporter.expand(at("run [2020]")));
+        assertEquals(List.of("https://en.wikipedia.org/wiki/Test", "/data/x.txt"), BulkImporter.expand(at("list?.txt")));
+    }
+}